@@ -0,0 +1,134 @@
+package be.springboot.pp.searchtypeahead.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+* Fails the `benchmark` profile build when a JMH result got worse than the baseline by more than
+* the threshold (in %).
+*
+* Both files are JMH JSON results (-rf json), the baseline is simply an older run checked in:
+*   cp target/jmh-result.json src/jmh/resources/jmh-baseline.json
+* Runs are matched on benchmark + mode + params, the primary score is compared in the direction
+* of its mode (throughput: higher is better, time modes: lower is better), and so is
+* gc.alloc.rate.norm (bytes per op) when both runs were made with -prof gc.
+* Benchmarks missing from either side are reported and skipped.
+*
+* A missing baseline only warns while -Djmh.baseline.optional=true, the profile's default until one is
+* recorded. CI runs with -Djmh.baseline.optional=false, then a missing baseline fails the check.
+*
+*   usage: BenchmarkRegressionCheck <result.json> <baseline.json> <thresholdPercent>
+* */
+public final class BenchmarkRegressionCheck {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+    private static final double ALLOCATION_SLACK_BYTES = 8; // a few bytes of noise on an allocation free benchmark are not a regression
+
+    private BenchmarkRegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: BenchmarkRegressionCheck <result.json> <baseline.json> <thresholdPercent>");
+            System.exit(2);
+        }
+        Path resultPath = Path.of(args[0]);
+        Path baselinePath = Path.of(args[1]);
+        double threshold = Double.parseDouble(args[2]) / 100.0;
+
+        if (!Files.exists(resultPath)) {
+            System.err.println("No JMH result at " + resultPath + ", did the benchmarks run?");
+            System.exit(2);
+        }
+        if (!Files.exists(baselinePath)) {
+            if (Boolean.getBoolean("jmh.baseline.optional")) {
+                System.out.println("No JMH baseline at " + baselinePath + ", skipping the regression check");
+                return;
+            }
+            System.err.println("No JMH baseline at " + baselinePath + ", record one with "
+                    + "cp " + resultPath + " " + baselinePath);
+            System.exit(2);
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, JsonNode> results = index(objectMapper.readTree(resultPath.toFile()));
+        Map<String, JsonNode> baseline = index(objectMapper.readTree(baselinePath.toFile()));
+
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, JsonNode> entry : results.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.println("[new]  " + entry.getKey());
+                continue;
+            }
+            JsonNode after = entry.getValue();
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            compare(entry.getKey(), score(before.path("primaryMetric")), score(after.path("primaryMetric")),
+                    after.path("primaryMetric").path("scoreUnit").asText(), higherIsBetter, threshold, 0, regressions);
+
+            JsonNode allocationBefore = secondaryMetric(before, ALLOCATION_METRIC);
+            JsonNode allocationAfter = secondaryMetric(after, ALLOCATION_METRIC);
+            if (allocationBefore != null && allocationAfter != null)
+                compare(entry.getKey() + " " + ALLOCATION_METRIC, score(allocationBefore), score(allocationAfter),
+                        allocationAfter.path("scoreUnit").asText(), false, threshold, ALLOCATION_SLACK_BYTES, regressions);
+        }
+        for (String key : baseline.keySet())
+            if (!results.containsKey(key))
+                System.out.println("[gone] " + key);
+
+        if (!regressions.isEmpty()) {
+            System.err.println(regressions.size() + " benchmark(s) regressed by more than " + args[2] + "%:");
+            regressions.forEach(regression -> System.err.println("  " + regression));
+            System.exit(1);
+        }
+        System.out.println("No benchmark regressed by more than " + args[2] + "%");
+    }
+
+    private static void compare(String name, double before, double after, String unit, boolean higherIsBetter,
+                                double threshold, double slack, List<String> regressions) {
+        double change = before == 0 ? 0 : (after - before) / before;
+        boolean regressed = higherIsBetter
+                ? after < before * (1 - threshold) - slack
+                : after > before * (1 + threshold) + slack;
+        String line = String.format("%s: %.3f -> %.3f %s (%+.1f%%)", name, before, after, unit, change * 100);
+        System.out.println((regressed ? "[FAIL] " : "[ok]   ") + line);
+        if (regressed)
+            regressions.add(line);
+    }
+
+    // benchmark + mode + params -> run, params sorted so the key doesn't depend on their order in the file
+    private static Map<String, JsonNode> index(JsonNode runs) {
+        Map<String, JsonNode> indexed = new LinkedHashMap<>();
+        for (JsonNode run : runs) {
+            Map<String, String> params = new TreeMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = run.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                params.put(field.getKey(), field.getValue().asText());
+            }
+            indexed.put(run.path("benchmark").asText() + " [" + run.path("mode").asText() + "] " + params, run);
+        }
+        return indexed;
+    }
+
+    // older JMH versions prefix secondary metric names with a '·'
+    private static JsonNode secondaryMetric(JsonNode run, String name) {
+        JsonNode metrics = run.path("secondaryMetrics");
+        JsonNode metric = metrics.get(name);
+        return metric != null ? metric : metrics.get("·" + name);
+    }
+
+    private static double score(JsonNode metric) {
+        return metric.path("score").asDouble();
+    }
+}
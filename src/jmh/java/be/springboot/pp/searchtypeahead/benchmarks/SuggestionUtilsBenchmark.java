@@ -0,0 +1,38 @@
+package be.springboot.pp.searchtypeahead.benchmarks;
+
+import be.springboot.pp.searchtypeahead.utils.SuggestionUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// the per-request query validation, run on every /search call before anything else
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuggestionUtilsBenchmark {
+
+    @Param({"mob", "samsung galaxy", "naïve café 日本"})
+    private String query;
+
+    @Benchmark
+    public boolean isAllLowerCaseString() {
+        return SuggestionUtils.isAllLowerCaseString(query);
+    }
+
+    @Benchmark
+    public boolean isValidQuery() {
+        return SuggestionUtils.isValidQuery(query);
+    }
+}
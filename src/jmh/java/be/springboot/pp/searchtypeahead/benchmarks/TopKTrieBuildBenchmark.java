@@ -0,0 +1,87 @@
+package be.springboot.pp.searchtypeahead.benchmarks;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.internal.TopKTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TrieNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Full trie build, bottom-up TopKTrieBuilder against the old per-insert HashSet merging
+* (copied below as it was, since it no longer exists in the main code).
+*
+* The recursive variant is quadratic-ish in practice, expect it to take minutes at 5M.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class TopKTrieBuildBenchmark {
+
+    @Param({"100000", "1000000", "5000000"})
+    private int size;
+
+    private TypeaheadDatasets.Dataset dataset;
+
+    @Setup
+    public void setUp() {
+        dataset = TypeaheadDatasets.generate(size, 42);
+    }
+
+    @Benchmark
+    public TrieNode bottomUpBuilder() {
+        TopKTrieBuilder builder = new TopKTrieBuilder(SuggestionConstants.MAX_QUERY_SIZE);
+        for (int i = 0; i < dataset.size(); i++)
+            builder.add(dataset.queries()[i], dataset.frequencies()[i]);
+        return builder.build(SuggestionConstants.MAX_ALLOWED_SUGGESTIONS);
+    }
+
+    @Benchmark
+    public TrieNode recursiveInsert() {
+        TrieNode root = new TrieNode();
+        for (int i = 0; i < dataset.size(); i++)
+            legacyInsert(dataset.queries()[i], dataset.frequencies()[i], 0, root);
+        return root;
+    }
+
+    private static List<Suggestion> legacyInsert(String query, long frequency, int depth, TrieNode cur) {
+        if (depth == query.length() || depth == SuggestionConstants.MAX_QUERY_SIZE) {
+            Set<Suggestion> suggestions = new HashSet<>(cur.getTopSuggestions());
+            suggestions.add(new Suggestion(query, (int) frequency));
+            return legacyUpdate(suggestions, cur);
+        }
+        if (cur.getChild(query.charAt(depth)) == null)
+            cur.putChild(query.charAt(depth), new TrieNode());
+        TrieNode next = cur.getChild(query.charAt(depth));
+        Set<Suggestion> allSuggestions = new HashSet<>();
+        legacyInsert(query, frequency, depth + 1, next);
+        allSuggestions.addAll(cur.getTopSuggestions());
+        cur.forEachChild((c, node) -> allSuggestions.addAll(node.getTopSuggestions()));
+        return legacyUpdate(allSuggestions, cur);
+    }
+
+    private static List<Suggestion> legacyUpdate(Set<Suggestion> suggestions, TrieNode cur) {
+        List<Suggestion> all = new ArrayList<>(suggestions);
+        all.sort((s1, s2) -> Integer.compare(s2.getFrequency(), s1.getFrequency()));
+        cur.setTopSuggestions(all.subList(0, Math.min(all.size(), SuggestionConstants.MAX_ALLOWED_SUGGESTIONS)));
+        return cur.getTopSuggestions();
+    }
+}
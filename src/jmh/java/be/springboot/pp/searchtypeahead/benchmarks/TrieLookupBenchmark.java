@@ -0,0 +1,109 @@
+package be.springboot.pp.searchtypeahead.benchmarks;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.internal.CompactTrie;
+import be.springboot.pp.searchtypeahead.internal.CompactTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.RadixNode;
+import be.springboot.pp.searchtypeahead.internal.RadixTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TopKTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TrieNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/*
+* Prefix lookup (what TopKSuggestionsTrie.getTopSuggestions does under the snapshot read) on each
+* trie layout, for a fixed pool of prefixes drawn from the dataset so most lookups hit a node.
+*
+* Run with -prof gc (the profile's default) to see allocations per lookup, the top-K lists are
+* shared by the pointer trie and the compact trie only allocates its view.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+public class TrieLookupBenchmark {
+
+    private static final int PREFIX_POOL_SIZE = 1 << 12;
+
+    @Param({"100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"topk", "compact", "radix"})
+    private String structure;
+
+    private Function<String, List<Suggestion>> lookup;
+    private String[] prefixes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        TypeaheadDatasets.Dataset dataset = TypeaheadDatasets.generate(size, 42);
+        int k = SuggestionConstants.MAX_ALLOWED_SUGGESTIONS;
+        int depth = SuggestionConstants.MAX_QUERY_SIZE;
+        switch (structure) {
+            case "topk" -> {
+                TopKTrieBuilder builder = new TopKTrieBuilder(depth);
+                for (int i = 0; i < dataset.size(); i++)
+                    builder.add(dataset.queries()[i], dataset.frequencies()[i]);
+                TrieNode root = builder.build(k);
+                lookup = query -> findTopK(root, query);
+            }
+            case "compact" -> {
+                CompactTrieBuilder builder = new CompactTrieBuilder();
+                for (int i = 0; i < dataset.size(); i++)
+                    builder.add(dataset.queries()[i], dataset.frequencies()[i]);
+                CompactTrie trie = builder.build(k, depth);
+                lookup = trie::getTopSuggestions;
+            }
+            case "radix" -> {
+                RadixTrieBuilder builder = new RadixTrieBuilder();
+                for (int i = 0; i < dataset.size(); i++)
+                    builder.add(dataset.queries()[i], dataset.frequencies()[i]);
+                RadixNode root = builder.build(k, depth);
+                lookup = query -> {
+                    RadixNode node = RadixNode.find(root, query);
+                    return node == null ? Collections.emptyList() : node.getTopSuggestions();
+                };
+            }
+            default -> throw new IllegalArgumentException("Unknown structure: " + structure);
+        }
+
+        Random random = new Random(7);
+        prefixes = new String[PREFIX_POOL_SIZE];
+        for (int i = 0; i < PREFIX_POOL_SIZE; i++) {
+            String query = dataset.queries()[random.nextInt(dataset.size())];
+            prefixes[i] = query.substring(0, random.nextInt(1, Math.min(query.length(), depth) + 1));
+        }
+    }
+
+    @Benchmark
+    public List<Suggestion> getTopSuggestions() {
+        return lookup.apply(prefixes[next++ & (PREFIX_POOL_SIZE - 1)]);
+    }
+
+    // same walk as TopKSuggestionsTrie.findNode
+    private static List<Suggestion> findTopK(TrieNode root, String query) {
+        TrieNode cur = root;
+        for (int i = 0; i < query.length() && cur != null; i++)
+            cur = cur.getChild(query.charAt(i));
+        return cur == null ? Collections.emptyList() : cur.getTopSuggestions();
+    }
+}
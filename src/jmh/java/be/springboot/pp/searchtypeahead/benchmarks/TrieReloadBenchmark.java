@@ -0,0 +1,91 @@
+package be.springboot.pp.searchtypeahead.benchmarks;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.internal.CompactTrie;
+import be.springboot.pp.searchtypeahead.internal.CompactTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.ShardedTopKTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TopKTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TrieNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+* What a reload costs once the rows are off the DB: building the whole structure, JSON payloads included
+* for the pointer trie, as TopKSuggestionsTrie.constructTrie / CompactSuggestionTrie.constructTrie do it.
+* */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms8g", "-Xmx8g"})
+public class TrieReloadBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    private int size;
+
+    private TypeaheadDatasets.Dataset dataset;
+    private ObjectMapper objectMapper;
+    private ForkJoinPool buildPool;
+
+    @Setup
+    public void setUp() {
+        dataset = TypeaheadDatasets.generate(size, 42);
+        objectMapper = new ObjectMapper();
+        buildPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        buildPool.shutdown();
+    }
+
+    @Benchmark
+    public TrieNode shardedTopKReload() {
+        ShardedTopKTrieBuilder builder = new ShardedTopKTrieBuilder(SuggestionConstants.MAX_QUERY_SIZE);
+        for (int i = 0; i < dataset.size(); i++)
+            builder.add(dataset.queries()[i], dataset.frequencies()[i]);
+        return builder.build(SuggestionConstants.MAX_ALLOWED_SUGGESTIONS, this::renderPayload, buildPool);
+    }
+
+    @Benchmark
+    public TrieNode singleThreadedTopKReload() {
+        TopKTrieBuilder builder = new TopKTrieBuilder(SuggestionConstants.MAX_QUERY_SIZE);
+        for (int i = 0; i < dataset.size(); i++)
+            builder.add(dataset.queries()[i], dataset.frequencies()[i]);
+        return builder.build(SuggestionConstants.MAX_ALLOWED_SUGGESTIONS, this::renderPayload);
+    }
+
+    @Benchmark
+    public CompactTrie compactReload() {
+        CompactTrieBuilder builder = new CompactTrieBuilder();
+        for (int i = 0; i < dataset.size(); i++)
+            builder.add(dataset.queries()[i], dataset.frequencies()[i]);
+        return builder.build(SuggestionConstants.MAX_ALLOWED_SUGGESTIONS, SuggestionConstants.MAX_QUERY_SIZE);
+    }
+
+    private byte[] renderPayload(List<Suggestion> suggestions) {
+        try {
+            return objectMapper.writeValueAsBytes(suggestions);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
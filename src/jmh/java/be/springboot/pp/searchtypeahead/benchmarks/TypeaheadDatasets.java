@@ -0,0 +1,48 @@
+package be.springboot.pp.searchtypeahead.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/*
+* Synthetic query_frequency contents for the benchmarks, generated the same way as
+* Application.generateData() (random lowercase strings, frequency = how often one was drawn)
+* but over the full alphabet and with longer queries, so the trie gets realistically wide.
+* */
+public final class TypeaheadDatasets {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+
+    private TypeaheadDatasets() {
+    }
+
+    public static Dataset generate(int distinctQueries, long seed) {
+        Map<String, Long> frequencies = new HashMap<>(distinctQueries * 2);
+        Random random = new Random(seed);
+        while (frequencies.size() < distinctQueries) {
+            int length = random.nextInt(1, 13);
+            StringBuilder sb = new StringBuilder(length);
+            // skewed towards the start of the alphabet, so some prefixes are much hotter than others
+            for (int j = 0; j < length; j++)
+                sb.append(ALPHABET.charAt((int) (ALPHABET.length() * Math.pow(random.nextDouble(), 2))));
+            frequencies.merge(sb.toString(), 1L + random.nextInt(1000), Long::sum);
+        }
+
+        String[] queries = new String[frequencies.size()];
+        long[] counts = new long[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Long> entry : frequencies.entrySet()) {
+            queries[i] = entry.getKey();
+            counts[i] = entry.getValue();
+            i++;
+        }
+        return new Dataset(queries, counts);
+    }
+
+    public record Dataset(String[] queries, long[] frequencies) {
+
+        public int size() {
+            return queries.length;
+        }
+    }
+}
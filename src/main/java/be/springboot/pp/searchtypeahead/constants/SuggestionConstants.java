@@ -1,7 +1,13 @@
 package be.springboot.pp.searchtypeahead.constants;
 
+import java.nio.charset.StandardCharsets;
+
 public class SuggestionConstants {
     // can come from config or prop files also
     public static final int MAX_ALLOWED_SUGGESTIONS = 4;
     public static final int MAX_QUERY_SIZE = 5;
+    public static final int MAX_FUZZY_EDITS = 2;
+    public static final int MAX_BATCH_PREFIXES = 32;
+    public static final String TRIE_GENERATION_HEADER = "X-Trie-Generation";
+    public static final byte[] EMPTY_SUGGESTIONS_PAYLOAD = "[]".getBytes(StandardCharsets.UTF_8);
 }
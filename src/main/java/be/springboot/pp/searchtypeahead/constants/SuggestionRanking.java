@@ -0,0 +1,7 @@
+package be.springboot.pp.searchtypeahead.constants;
+
+// how suggestions under a prefix are ordered, each ranking is served by its own SuggestionDataStructure
+public enum SuggestionRanking {
+    LIFETIME, // all time hit count (query_frequency.frequency)
+    TRENDING  // exponentially decayed hit count (query_frequency.trending_score)
+}
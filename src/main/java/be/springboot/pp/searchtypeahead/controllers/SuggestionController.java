@@ -1,18 +1,28 @@
 package be.springboot.pp.searchtypeahead.controllers;
 
-import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionBatchRequest;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionBatchResponse;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionCacheStats;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionResponse;
 import be.springboot.pp.searchtypeahead.managers.SuggestionManager;
 import be.springboot.pp.searchtypeahead.utils.SuggestionUtils;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -24,26 +34,88 @@ public class SuggestionController {
     @Autowired
     private SuggestionManager suggestionManager;
 
+    /*
+    * The body is the JSON pre-rendered when the trie was built (or cached after the first render),
+    * so it is written straight to the output stream, no message converter, no Jackson, no copy.
+    *
+    * `rank=trending` orders by the decayed trending score instead of the lifetime hit count.
+    * */
     @GetMapping(value = "/suggestion")
-    public ResponseEntity<List<Suggestion>> getSuggestion(@RequestParam("query") final String query) {
-        log.info("SuggestionController: getSuggestion: query: {}", query);
-        if (query == null || query.isEmpty() || !SuggestionUtils.isAllLowerCaseString(query)) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Collections.emptyList());
+    public void getSuggestion(@RequestParam("query") final String query,
+                              @RequestParam(value = "fuzzy", defaultValue = "0") final int fuzzy,
+                              @RequestParam(value = "rank", defaultValue = "lifetime") final String rank,
+                              HttpServletResponse httpResponse) throws IOException {
+        log.debug("SuggestionController: getSuggestion: query: {}, rank: {}", query, rank);
+        SuggestionRanking ranking = parseRanking(rank);
+        if (query == null || !SuggestionUtils.isValidQuery(query) || ranking == null || !suggestionManager.isRankingSupported(ranking)) {
+            writeJson(httpResponse, HttpStatus.BAD_REQUEST, SuggestionConstants.EMPTY_SUGGESTIONS_PAYLOAD);
+            return;
         }
 
-        List<Suggestion> suggestions = suggestionManager.getTopSuggestion(query);
-        log.info("SuggestionController: getSuggestion: suggestions: {}", suggestions);
-        return ResponseEntity.ok(suggestions);
+        SuggestionResponse response = suggestionManager.getTopSuggestionResponse(query, fuzzy, ranking);
+        httpResponse.setHeader(SuggestionConstants.TRIE_GENERATION_HEADER, String.valueOf(response.generation()));
+        writeJson(httpResponse, HttpStatus.OK, response.body());
+    }
+
+    /*
+    * Top-K of several prefixes in one round trip, e.g. every prefix of the word being typed, so a client
+    * can prefetch the next keystrokes instead of calling /suggestion once per key.
+    * Takes either `prefixes` or a `query` that is expanded into all of its prefixes (up to MAX_QUERY_SIZE).
+    * A prefix longer than MAX_QUERY_SIZE, the depth of the trie, is rejected: it can't match anything
+    * and would only make the walks longer.
+    * */
+    @PostMapping(value = "/suggestions:batch")
+    public ResponseEntity<SuggestionBatchResponse> getSuggestionsBatch(@RequestBody SuggestionBatchRequest request) {
+        log.debug("SuggestionController: getSuggestionsBatch: prefixes: {}, query: {}", request.getPrefixes(), request.getQuery());
+        List<String> prefixes = request.getPrefixes() != null ? request.getPrefixes() : expandPrefixes(request.getQuery());
+        SuggestionRanking ranking = parseRanking(request.getRank());
+        if (prefixes.isEmpty() || prefixes.size() > SuggestionConstants.MAX_BATCH_PREFIXES
+                || ranking == null || !suggestionManager.isRankingSupported(ranking)) {
+            return ResponseEntity.badRequest().build();
+        }
+        for (String prefix : prefixes) {
+            if (prefix == null || prefix.length() > SuggestionConstants.MAX_QUERY_SIZE || !SuggestionUtils.isValidQuery(prefix))
+                return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(suggestionManager.getTopSuggestionsBatch(prefixes, ranking));
+    }
+
+    @GetMapping(value = "/cache/stats")
+    public SuggestionCacheStats getCacheStats() {
+        return suggestionManager.getCacheStats();
     }
 
     @PostMapping(value = "/query")
     public ResponseEntity updateQueryFrequency(@RequestParam("query") final String query) {
         log.info("SuggestionController: updateQueryFrequency: query: {}", query);
-        if (query == null || query.isEmpty() || !SuggestionUtils.isAllLowerCaseString(query)) {
+        if (query == null || !SuggestionUtils.isValidQuery(query)) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Collections.emptyList());
         }
 
         suggestionManager.updateQueryFrequency(query);
         return ResponseEntity.ok().build();
     }
+
+    private List<String> expandPrefixes(String query) {
+        List<String> prefixes = new ArrayList<>();
+        if (query == null) return prefixes;
+        for (int length = 1; length <= Math.min(query.length(), SuggestionConstants.MAX_QUERY_SIZE); length++)
+            prefixes.add(query.substring(0, length));
+        return prefixes;
+    }
+
+    private SuggestionRanking parseRanking(String rank) {
+        for (SuggestionRanking ranking : SuggestionRanking.values())
+            if (ranking.name().equalsIgnoreCase(rank))
+                return ranking;
+        return null;
+    }
+
+    private void writeJson(HttpServletResponse httpResponse, HttpStatus status, byte[] body) throws IOException {
+        httpResponse.setStatus(status.value());
+        httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        httpResponse.setContentLength(body.length);
+        httpResponse.getOutputStream().write(body);
+    }
 }
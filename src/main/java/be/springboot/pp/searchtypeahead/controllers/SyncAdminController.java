@@ -0,0 +1,60 @@
+package be.springboot.pp.searchtypeahead.controllers;
+
+import be.springboot.pp.searchtypeahead.dtos.SyncStatus;
+import be.springboot.pp.searchtypeahead.utils.SuggestionUtils;
+import be.springboot.pp.searchtypeahead.workers.DbToCacheSyncWorker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/*
+* Operator endpoints for DbToCacheSyncWorker.
+*
+* POST /search/admin/sync/reload            full rebuild of every trie, returns once it is published
+* POST /search/admin/sync/reload?shard=m    rebuild only the queries starting with 'm'
+* POST /search/admin/sync/pause | resume    stop / restart the periodic delta sync
+* GET  /search/admin/sync/status
+* */
+@Slf4j
+@RestController
+@RequestMapping("/search/admin/sync")
+public class SyncAdminController {
+
+    @Autowired
+    private DbToCacheSyncWorker dbToCacheSyncWorker;
+
+    @GetMapping(value = "/status")
+    public SyncStatus getStatus() {
+        return dbToCacheSyncWorker.getStatus();
+    }
+
+    @PostMapping(value = "/reload")
+    public ResponseEntity<SyncStatus> reload(@RequestParam(value = "shard", required = false) final String shard) {
+        log.info("SyncAdminController: reload: shard: {}", shard);
+        if (shard == null) {
+            dbToCacheSyncWorker.forceReload();
+        } else {
+            if (shard.length() != 1 || !SuggestionUtils.isValidQuery(shard))
+                return ResponseEntity.badRequest().build();
+            dbToCacheSyncWorker.forceReloadShard(shard.charAt(0));
+        }
+        return ResponseEntity.ok(dbToCacheSyncWorker.getStatus());
+    }
+
+    @PostMapping(value = "/pause")
+    public SyncStatus pause() {
+        dbToCacheSyncWorker.pause();
+        return dbToCacheSyncWorker.getStatus();
+    }
+
+    @PostMapping(value = "/resume")
+    public SyncStatus resume() {
+        dbToCacheSyncWorker.resume();
+        return dbToCacheSyncWorker.getStatus();
+    }
+}
@@ -1,12 +1,15 @@
 package be.springboot.pp.searchtypeahead.dtos;
 
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
 @Getter
 @Setter
+@EqualsAndHashCode(onlyExplicitlyIncluded = true) // the same query text is the same suggestion, whatever its frequency
 public class Suggestion {
     private final int frequency;
+    @EqualsAndHashCode.Include
     private String suggestion;
 
     public Suggestion(String suggestionText, int frequency) {
@@ -0,0 +1,20 @@
+package be.springboot.pp.searchtypeahead.dtos;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+/*
+* Body of POST /search/suggestions:batch, either the prefixes to look up or a single query
+* that is expanded into all of its prefixes ("mob" -> "m", "mo", "mob").
+* */
+@Getter
+@Setter
+@NoArgsConstructor
+public class SuggestionBatchRequest {
+    private List<String> prefixes;
+    private String query;
+    private String rank = "lifetime";
+}
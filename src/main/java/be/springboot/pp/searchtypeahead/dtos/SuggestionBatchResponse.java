@@ -0,0 +1,14 @@
+package be.springboot.pp.searchtypeahead.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@AllArgsConstructor
+public class SuggestionBatchResponse {
+    private final long generation;
+    private final Map<String, List<Suggestion>> suggestions; // prefix -> top-K, in request order
+}
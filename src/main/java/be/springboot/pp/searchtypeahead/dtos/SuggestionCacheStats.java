@@ -0,0 +1,16 @@
+package be.springboot.pp.searchtypeahead.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SuggestionCacheStats {
+    private final long generation;
+    private final long estimatedSize;
+    private final long hitCount;
+    private final long missCount;
+    private final double hitRatio;
+    private final long evictionCount;
+    private final double averageLoadPenaltyMillis;
+}
@@ -0,0 +1,7 @@
+package be.springboot.pp.searchtypeahead.dtos;
+
+/*
+* Already serialized JSON body of a suggestion response, along with the trie generation it was built from.
+* */
+public record SuggestionResponse(byte[] body, long generation) {
+}
@@ -0,0 +1,17 @@
+package be.springboot.pp.searchtypeahead.dtos;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// what a SuggestionDataStructure is currently serving, -1 where the structure doesn't track a value
+@Getter
+@AllArgsConstructor
+public class SuggestionStructureStats {
+    private final SuggestionRanking ranking;
+    private final long generation;
+    private final long nodeCount;
+    private final long estimatedSizeBytes;
+    private final long builtAtMillis;
+    private final long lastReloadDurationMillis;
+}
@@ -0,0 +1,22 @@
+package be.springboot.pp.searchtypeahead.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+// state of DbToCacheSyncWorker, -1 for times that have not happened yet
+@Getter
+@AllArgsConstructor
+public class SyncStatus {
+    private final boolean paused;
+    private final Date watermark;
+    private final long lastRunAtMillis;
+    private final long lastSuccessAtMillis;
+    private final long lastDurationMillis;
+    private final int lastAppliedRows;
+    private final long skippedCycles; // cycles that found nothing new and published nothing
+    private final int consecutiveFailures;
+    private final String lastError;
+    private final long nextRunAtMillis;
+}
@@ -5,7 +5,10 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -18,7 +21,8 @@ import java.util.Date;
 @ToString
 @Entity
 @NoArgsConstructor
-@Table(name = "query_frequency")
+// one row per query, QueryFrequencyBatchWriter's upsert depends on it
+@Table(name = "query_frequency", uniqueConstraints = @UniqueConstraint(name = "uk_query_frequency_query", columnNames = "query"))
 public class QueryFrequency {
 
     @Id
@@ -38,8 +42,24 @@ public class QueryFrequency {
     @Column(name = "frequency")
     private Long frequency;
 
+    // log2 of the forward decayed hit count, see TrendingDecayScorer, null until the query gets a hit
+    @Column(name = "trending_score")
+    private Double trendingScore;
+
     public QueryFrequency(String query, Long frequency) {
         this.query = query;
         this.frequency = frequency;
     }
+
+    // updated_at is the watermark DbToCacheSyncWorker syncs on, so every write has to bump it
+    @PrePersist
+    void onCreate() {
+        this.createdAt = new Date();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        this.updatedAt = new Date();
+    }
 }
@@ -0,0 +1,100 @@
+package be.springboot.pp.searchtypeahead.filters;
+
+import be.springboot.pp.searchtypeahead.internal.AdaptiveConcurrencyLimiter;
+import be.springboot.pp.searchtypeahead.metrics.TypeaheadMetrics;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/*
+* Admission control in front of /search/**: a request either gets a slot of the adaptive
+* concurrency limit (see AdaptiveConcurrencyLimiter) or is answered 429 + Retry-After right away,
+* so a spike degrades into fast rejections instead of an unbounded queue of threads.
+*
+* POST /search/query (hit recording) is a write and only gets `write-share` of the limit,
+* so writes are shed first. /search/admin/** is never shed.
+*
+* disable it with `search.typeahead.admission.enabled=false`
+* */
+@Slf4j
+@Order(Ordered.HIGHEST_PRECEDENCE) // ahead of Spring Security's chain (-100) too, a request we turn away costs nothing else
+@Component
+@ConditionalOnProperty(prefix = "search.typeahead.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SearchAdmissionFilter implements Filter {
+
+    private static final String SEARCH_PATH = "/search/";
+    private static final String ADMIN_PATH = "/search/admin/";
+    private static final String QUERY_PATH = "/search/query";
+    private static final byte[] REJECTED_BODY = "{\"error\":\"too many requests\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final TypeaheadMetrics typeaheadMetrics;
+    private final String retryAfterSeconds;
+
+    @Autowired
+    public SearchAdmissionFilter(TypeaheadMetrics typeaheadMetrics,
+                                 @Value("${search.typeahead.admission.initial-limit:100}") int initialLimit,
+                                 @Value("${search.typeahead.admission.min-limit:10}") int minLimit,
+                                 @Value("${search.typeahead.admission.max-limit:1000}") int maxLimit,
+                                 @Value("${search.typeahead.admission.backoff-ratio:0.9}") double backoffRatio,
+                                 @Value("${search.typeahead.admission.latency-threshold-millis:100}") long latencyThresholdMillis,
+                                 @Value("${search.typeahead.admission.write-share:0.5}") double writeShare,
+                                 @Value("${search.typeahead.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, backoffRatio,
+                latencyThresholdMillis * 1_000_000, writeShare);
+        this.typeaheadMetrics = typeaheadMetrics;
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+        typeaheadMetrics.bindAdmissionLimiter(limiter);
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(SEARCH_PATH) || path.startsWith(ADMIN_PATH)) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        boolean write = "POST".equals(request.getMethod()) && path.equals(QUERY_PATH);
+        if (!limiter.tryAcquire(write)) {
+            typeaheadMetrics.recordShed(write);
+            log.debug("SearchAdmissionFilter: shedding {} {} (limit {}, in flight {})",
+                    request.getMethod(), path, limiter.getLimit(), limiter.getInFlight());
+            reject((HttpServletResponse) servletResponse);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+}
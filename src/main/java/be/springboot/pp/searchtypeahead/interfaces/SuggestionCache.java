@@ -1,10 +1,29 @@
 package be.springboot.pp.searchtypeahead.interfaces;
 
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
 import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionCacheStats;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionResponse;
 
 import java.util.List;
 
 public interface SuggestionCache {
 
     List<Suggestion> getCachedSuggestions(String query);
+
+    SuggestionResponse getCachedResponse(String query); // serialized JSON, ready to be written as the response body
+
+    SuggestionResponse getCachedFuzzyResponse(String query, int maxEdits);
+
+    SuggestionResponse getCachedResponse(String query, int maxEdits, SuggestionRanking ranking);
+
+    boolean isRankingSupported(SuggestionRanking ranking); // false if no structure serves that ranking
+
+    List<List<Suggestion>> getSuggestionsAlongPath(String word, SuggestionRanking ranking); // not cached, a single trie walk
+
+    long getGeneration(SuggestionRanking ranking);
+
+    SuggestionCacheStats getStats();
+
+    long getGeneration();
 }
@@ -1,7 +1,12 @@
 package be.springboot.pp.searchtypeahead.interfaces;
 
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
 import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionStructureStats;
+import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 public interface SuggestionDataStructure {
@@ -10,5 +15,55 @@ public interface SuggestionDataStructure {
 
     List<Suggestion> getTopSuggestions(String query);
 
+    // top-K of every prefix of word ("a", "ab", "abc"...) in that order, structures that can't do better look each one up
+    default List<List<Suggestion>> getTopSuggestionsAlongPath(String word) {
+        List<List<Suggestion>> suggestions = new ArrayList<>(word.length());
+        for (int i = 1; i <= word.length(); i++)
+            suggestions.add(getTopSuggestions(word.substring(0, i)));
+        return suggestions;
+    }
+
+    // typo tolerant lookup, structures without a fuzzy walk just answer the exact prefix
+    default List<Suggestion> getFuzzyTopSuggestions(String query, int maxEdits) {
+        return getTopSuggestions(query);
+    }
+
+    // getTopSuggestions(query) already rendered as a JSON body, null if this structure doesn't keep one
+    default byte[] getTopSuggestionsPayload(String query) {
+        return null;
+    }
+
     void reload(); // for replacing existing RAM trie with new trie constructed from DB
+
+    // rebuild only the queries starting with firstChar, structures that aren't sharded just rebuild everything
+    default void reloadShard(char firstChar) {
+        reload();
+    }
+
+    // patch only the given rows (and their ancestors' top-K) in, structures that can't be patched just rebuild
+    default void applyUpdates(List<QueryFrequency> changedEntries) {
+        reload();
+    }
+
+    // which ordering this structure serves, several structures can live side by side with different rankings
+    default SuggestionRanking getRanking() {
+        return SuggestionRanking.LIFETIME;
+    }
+
+    long getGeneration(); // bumped on every published reload, lets us see which snapshot a node is serving
+
+    // size and age of the published trie, read by the metrics gauges so it has to be cheap
+    default SuggestionStructureStats getStats() {
+        return new SuggestionStructureStats(getRanking(), getGeneration(), -1, -1, -1, -1);
+    }
+
+    // false while the structure is still doing its first build in the background, it serves an empty trie meanwhile
+    default boolean isReady() {
+        return true;
+    }
+
+    // max updated_at of the rows the structure currently holds, null if it doesn't track it (then the sync worker starts with a full reload)
+    default Date getLoadedWatermark() {
+        return null;
+    }
 }
@@ -0,0 +1,22 @@
+package be.springboot.pp.searchtypeahead.interfaces;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
+import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
+
+/*
+* Turns a query_frequency row into the number a trie ranks it by.
+*
+* Scores of one trie are all taken against the same referenceMillis (when the trie was built),
+* so rows patched in later stay comparable with the ones already in it.
+* */
+public interface SuggestionScorer {
+
+    SuggestionRanking getRanking();
+
+    long score(QueryFrequency entry, long referenceMillis);
+
+    // how long a trie can keep taking deltas against its referenceMillis before it has to be rebuilt
+    default long getRebuildAfterMillis() {
+        return Long.MAX_VALUE;
+    }
+}
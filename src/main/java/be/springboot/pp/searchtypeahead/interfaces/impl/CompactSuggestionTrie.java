@@ -0,0 +1,200 @@
+package be.springboot.pp.searchtypeahead.interfaces.impl;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionStructureStats;
+import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import be.springboot.pp.searchtypeahead.internal.CompactTrie;
+import be.springboot.pp.searchtypeahead.internal.CompactTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.CompactTrieLayers;
+import be.springboot.pp.searchtypeahead.internal.CompactTrieSnapshotFile;
+import be.springboot.pp.searchtypeahead.internal.TrieSnapshot;
+import be.springboot.pp.searchtypeahead.repositories.QueryFrequencyRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+* Same contract as TopKSuggestionsTrie, but the trie is stored in flat arrays (see CompactTrie)
+* and is never mutated after being built, reload builds a fresh one and publishes it as a new snapshot.
+*
+* enable it with `search.typeahead.trie=compact`
+*
+* With `search.typeahead.snapshot.path` set, every trie built from the DB is also written to that
+* file (CompactTrieSnapshotFile), and on startup a valid file is mapped and served as is instead of
+* reading the whole table. The file carries the updated_at watermark of its rows, so the sync worker
+* only has to fetch what changed after it.
+*
+* Deltas don't touch the compact (possibly mapped) base trie. Changed rows go into a small heap
+* overlay and a lookup merges the two (see CompactTrieLayers). Once the overlay holds more than
+* `overlayMaxRows` queries it is compacted: merged into a new base trie in memory, which is also
+* when the snapshot file gets rewritten. The DB is not scanned again for deltas either way.
+* */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "search.typeahead", name = "trie", havingValue = "compact")
+public class CompactSuggestionTrie implements SuggestionDataStructure {
+
+    private final AtomicReference<TrieSnapshot<CompactTrieLayers>> snapshot =
+            new AtomicReference<>(new TrieSnapshot<>(CompactTrieLayers.of(new CompactTrieBuilder().build(0, 0)), 0, System.currentTimeMillis()));
+    private final Object reloadLock = new Object();
+    private int threshold = SuggestionConstants.MAX_ALLOWED_SUGGESTIONS;
+    private final QueryFrequencyRepository queryFrequencyRepository;
+    private final int pageSize;
+    private final Path snapshotPath; // null when snapshots are disabled
+    private final long snapshotMinWriteIntervalMillis;
+    private final int overlayMaxRows;
+    private volatile Date loadedWatermark;
+    private long lastSnapshotWriteMillis;
+    private volatile long estimatedSizeBytes;
+    private volatile long lastReloadDurationMillis = -1;
+
+    @Autowired
+    public CompactSuggestionTrie(QueryFrequencyRepository queryFrequencyRepository, Optional<Integer> maxSug,
+                                 @Value("${search.typeahead.build.page-size:10000}") int pageSize,
+                                 @Value("${search.typeahead.snapshot.path:}") String snapshotPath,
+                                 @Value("${search.typeahead.snapshot.min-write-interval-millis:300000}") long snapshotMinWriteIntervalMillis,
+                                 @Value("${search.typeahead.compact.overlay-max-rows:10000}") int overlayMaxRows) {
+        this.queryFrequencyRepository = queryFrequencyRepository;
+        this.pageSize = pageSize;
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.snapshotMinWriteIntervalMillis = snapshotMinWriteIntervalMillis;
+        this.overlayMaxRows = overlayMaxRows;
+        init(maxSug.orElseGet(() -> threshold));
+    }
+
+    @Override
+    public void init(int maxSuggestions) {
+        this.threshold = Math.max(threshold, maxSuggestions);
+        if (!loadSnapshotFile())
+            reload();
+    }
+
+    @Override
+    public List<Suggestion> getTopSuggestions(String query) {
+        return snapshot.get().trie().getTopSuggestions(query, threshold);
+    }
+
+    @Override
+    public List<List<Suggestion>> getTopSuggestionsAlongPath(String word) {
+        return snapshot.get().trie().getTopSuggestionsAlongPath(word, threshold);
+    }
+
+    @Override
+    public void reload() {
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            // taken before the build, anything written while it runs comes in as a delta
+            Date mark = queryFrequencyRepository.findMaxUpdatedAt();
+            CompactTrie trie = constructTrie();
+            publishBase(trie, mark != null ? mark : new Date(0), true);
+            lastReloadDurationMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    @Override
+    public void applyUpdates(List<QueryFrequency> changedEntries) {
+        if (changedEntries.isEmpty()) return;
+        synchronized (reloadLock) {
+            CompactTrieLayers current = snapshot.get().trie();
+            Map<String, Long> overlayRows = new HashMap<>(current.overlayRows());
+            Date mark = loadedWatermark != null ? loadedWatermark : new Date(0);
+            for (QueryFrequency entry : changedEntries) {
+                overlayRows.put(entry.getQuery(), entry.getFrequency());
+                if (entry.getUpdatedAt() != null && entry.getUpdatedAt().after(mark))
+                    mark = entry.getUpdatedAt();
+            }
+
+            if (overlayRows.size() > overlayMaxRows) {
+                publishBase(current.compact(overlayRows, threshold, SuggestionConstants.MAX_QUERY_SIZE), mark, false);
+                return;
+            }
+            // only the overlay is rebuilt, its size is bounded by overlayMaxRows
+            snapshot.set(snapshot.get().next(current.withOverlay(overlayRows, threshold, SuggestionConstants.MAX_QUERY_SIZE)));
+            loadedWatermark = mark;
+        }
+    }
+
+    @Override
+    public long getGeneration() {
+        return snapshot.get().generation();
+    }
+
+    @Override
+    public SuggestionStructureStats getStats() {
+        TrieSnapshot<CompactTrieLayers> current = snapshot.get();
+        return new SuggestionStructureStats(getRanking(), current.generation(), current.trie().base().getNodeCount(),
+                estimatedSizeBytes, current.builtAtMillis(), lastReloadDurationMillis);
+    }
+
+    @Override
+    public Date getLoadedWatermark() {
+        return loadedWatermark;
+    }
+
+    private CompactTrie constructTrie() {
+        CompactTrieBuilder builder = new CompactTrieBuilder();
+        queryFrequencyRepository.forEachPage(pageSize, page -> {
+            for (QueryFrequency entry : page)
+                builder.add(entry.getQuery(), entry.getFrequency());
+        });
+        return builder.build(threshold, SuggestionConstants.MAX_QUERY_SIZE);
+    }
+
+    // a new base replaces base and overlay alike
+    private void publishBase(CompactTrie trie, Date watermark, boolean fullReload) {
+        snapshot.set(snapshot.get().next(CompactTrieLayers.of(trie)));
+        loadedWatermark = watermark;
+        estimatedSizeBytes = trie.getEstimatedSizeBytes();
+        // a full reload always refreshes the file, compactions only once in a while to keep the disk quiet
+        if (fullReload || System.currentTimeMillis() - lastSnapshotWriteMillis >= snapshotMinWriteIntervalMillis)
+            writeSnapshotFile(trie, watermark);
+    }
+
+    private boolean loadSnapshotFile() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) return false;
+        try {
+            CompactTrieSnapshotFile.Snapshot loaded = CompactTrieSnapshotFile.open(snapshotPath);
+            if (loaded.maxSuggestions() < threshold || loaded.maxDepth() != SuggestionConstants.MAX_QUERY_SIZE) {
+                log.info("Ignoring trie snapshot {} built with K={} depth={}, rebuilding from the DB",
+                        snapshotPath, loaded.maxSuggestions(), loaded.maxDepth());
+                return false;
+            }
+            synchronized (reloadLock) {
+                snapshot.set(snapshot.get().next(CompactTrieLayers.of(loaded.trie())));
+                loadedWatermark = new Date(loaded.watermarkMillis());
+                estimatedSizeBytes = loaded.trie().getEstimatedSizeBytes();
+                lastSnapshotWriteMillis = loaded.builtAtMillis();
+            }
+            log.info("Serving trie snapshot {} ({} nodes, {} queries, watermark {})", snapshotPath,
+                    loaded.trie().getNodeCount(), loaded.trie().getSuggestionCount(), loadedWatermark);
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not open trie snapshot {}, rebuilding from the DB", snapshotPath, e);
+            return false;
+        }
+    }
+
+    private void writeSnapshotFile(CompactTrie trie, Date watermark) {
+        if (snapshotPath == null) return;
+        try {
+            CompactTrieSnapshotFile.write(trie, threshold, SuggestionConstants.MAX_QUERY_SIZE, watermark.getTime(), snapshotPath);
+            lastSnapshotWriteMillis = System.currentTimeMillis();
+        } catch (IOException e) {
+            log.warn("Could not write trie snapshot {}", snapshotPath, e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package be.springboot.pp.searchtypeahead.interfaces.impl;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
+import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionScorer;
+import org.springframework.stereotype.Component;
+
+// the original ranking: every hit ever made counts the same
+@Component
+public class LifetimeFrequencyScorer implements SuggestionScorer {
+
+    @Override
+    public SuggestionRanking getRanking() {
+        return SuggestionRanking.LIFETIME;
+    }
+
+    @Override
+    public long score(QueryFrequency entry, long referenceMillis) {
+        return entry.getFrequency() == null ? 0 : entry.getFrequency();
+    }
+}
@@ -0,0 +1,103 @@
+package be.springboot.pp.searchtypeahead.interfaces.impl;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionStructureStats;
+import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import be.springboot.pp.searchtypeahead.internal.RadixNode;
+import be.springboot.pp.searchtypeahead.internal.RadixTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TrieSnapshot;
+import be.springboot.pp.searchtypeahead.repositories.QueryFrequencyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+* Same contract as TopKSuggestionsTrie, but path compressed (see RadixNode): single-child chains
+* of the long tail are collapsed into edge labels and top-K lists are only kept where the trie
+* branches or a query ends. Immutable like CompactSuggestionTrie, reload publishes a new snapshot.
+*
+* enable it with `search.typeahead.trie=radix`
+* */
+@Service
+@ConditionalOnProperty(prefix = "search.typeahead", name = "trie", havingValue = "radix")
+public class RadixSuggestionTrie implements SuggestionDataStructure {
+
+    private final AtomicReference<TrieSnapshot<RadixNode>> snapshot =
+            new AtomicReference<>(new TrieSnapshot<>(new RadixTrieBuilder().build(0, 0), 0, System.currentTimeMillis()));
+    private final Object reloadLock = new Object();
+    private int threshold = SuggestionConstants.MAX_ALLOWED_SUGGESTIONS;
+    private final QueryFrequencyRepository queryFrequencyRepository;
+    private final int pageSize;
+    private volatile long nodeCount = 1;
+    private volatile long lastReloadDurationMillis = -1;
+    private volatile Date loadedWatermark; // max updated_at of the rows in the published trie
+
+    @Autowired
+    public RadixSuggestionTrie(QueryFrequencyRepository queryFrequencyRepository, Optional<Integer> maxSug,
+                               @Value("${search.typeahead.build.page-size:10000}") int pageSize) {
+        this.queryFrequencyRepository = queryFrequencyRepository;
+        this.pageSize = pageSize;
+        init(maxSug.orElseGet(() -> threshold));
+    }
+
+    @Override
+    public void init(int maxSuggestions) {
+        this.threshold = Math.max(threshold, maxSuggestions);
+        reload();
+    }
+
+    @Override
+    public List<Suggestion> getTopSuggestions(String query) {
+        RadixNode node = RadixNode.find(snapshot.get().trie(), query);
+        return node == null ? Collections.emptyList() : node.getTopSuggestions();
+    }
+
+    @Override
+    public void reload() {
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            // taken before the build, anything written while it runs comes in as a delta
+            Date mark = queryFrequencyRepository.findMaxUpdatedAt();
+            RadixNode trie = constructTrie();
+            snapshot.set(snapshot.get().next(trie));
+            loadedWatermark = mark != null ? mark : new Date(0);
+            lastReloadDurationMillis = (System.nanoTime() - start) / 1_000_000;
+            nodeCount = RadixNode.countNodes(trie);
+        }
+    }
+
+    @Override
+    public long getGeneration() {
+        return snapshot.get().generation();
+    }
+
+    @Override
+    public SuggestionStructureStats getStats() {
+        TrieSnapshot<RadixNode> current = snapshot.get();
+        return new SuggestionStructureStats(getRanking(), current.generation(), nodeCount, -1,
+                current.builtAtMillis(), lastReloadDurationMillis);
+    }
+
+    @Override
+    public Date getLoadedWatermark() {
+        return loadedWatermark;
+    }
+
+    private RadixNode constructTrie() {
+        RadixTrieBuilder builder = new RadixTrieBuilder();
+        queryFrequencyRepository.forEachPage(pageSize, page -> {
+            for (QueryFrequency entry : page)
+                builder.add(entry.getQuery(), entry.getFrequency());
+        });
+        return builder.build(threshold, SuggestionConstants.MAX_QUERY_SIZE);
+    }
+}
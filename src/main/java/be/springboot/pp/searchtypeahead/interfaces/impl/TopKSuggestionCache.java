@@ -1,23 +1,139 @@
 package be.springboot.pp.searchtypeahead.interfaces.impl;
 
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
 import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionCacheStats;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionResponse;
 import be.springboot.pp.searchtypeahead.interfaces.SuggestionCache;
 import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
+/*
+* Bounded cache of fully serialized responses in front of the trie.
+*
+* Caffeine's W-TinyLFU only admits keys that are asked for more often than what they would
+* evict, so in practice it ends up holding the hot short prefixes and the long tail goes
+* straight to the trie. Entries are keyed by (query, trie generation): once a new trie is
+* published, old entries are simply never hit again and age out, no invalidation race with
+* loads that are still running against the previous trie.
+*
+* Every ranking (lifetime, trending...) served by a SuggestionDataStructure bean goes through the same
+* cache, the ranking is part of the key and the generation is the one of that ranking's structure.
+* */
 @Service
 public class TopKSuggestionCache implements SuggestionCache {
 
     private final SuggestionDataStructure suggestionDataStructure;
+    private final Map<SuggestionRanking, SuggestionDataStructure> structuresByRanking = new EnumMap<>(SuggestionRanking.class);
+    private final ObjectMapper objectMapper;
+    private final LoadingCache<CacheKey, SuggestionResponse> responses;
 
-    public TopKSuggestionCache(SuggestionDataStructure suggestionDataStructure) {
+    public TopKSuggestionCache(SuggestionDataStructure suggestionDataStructure,
+                               List<SuggestionDataStructure> allStructures,
+                               ObjectMapper objectMapper,
+                               @Value("${search.typeahead.cache.max-entries:100000}") long maxEntries,
+                               @Value("${search.typeahead.cache.ttl-seconds:300}") long ttlSeconds,
+                               MeterRegistry meterRegistry) {
         this.suggestionDataStructure = suggestionDataStructure;
+        this.structuresByRanking.put(suggestionDataStructure.getRanking(), suggestionDataStructure);
+        for (SuggestionDataStructure structure : allStructures)
+            this.structuresByRanking.putIfAbsent(structure.getRanking(), structure);
+        this.objectMapper = objectMapper;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build(this::load);
+        // hits, misses, evictions and load time as cache.* meters, tagged cache=typeahead.responses
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "typeahead.responses");
     }
 
     @Override
     public List<Suggestion> getCachedSuggestions(String query) {
         return this.suggestionDataStructure.getTopSuggestions(query);
     }
+
+    @Override
+    public SuggestionResponse getCachedResponse(String query) {
+        return getCachedResponse(query, 0, SuggestionRanking.LIFETIME);
+    }
+
+    @Override
+    public SuggestionResponse getCachedFuzzyResponse(String query, int maxEdits) {
+        return getCachedResponse(query, maxEdits, SuggestionRanking.LIFETIME);
+    }
+
+    @Override
+    public SuggestionResponse getCachedResponse(String query, int maxEdits, SuggestionRanking ranking) {
+        return responses.get(new CacheKey(query, maxEdits, ranking, structureFor(ranking).getGeneration()));
+    }
+
+    @Override
+    public boolean isRankingSupported(SuggestionRanking ranking) {
+        return structuresByRanking.containsKey(ranking);
+    }
+
+    @Override
+    public List<List<Suggestion>> getSuggestionsAlongPath(String word, SuggestionRanking ranking) {
+        return structureFor(ranking).getTopSuggestionsAlongPath(word);
+    }
+
+    @Override
+    public long getGeneration(SuggestionRanking ranking) {
+        return structureFor(ranking).getGeneration();
+    }
+
+    @Override
+    public SuggestionCacheStats getStats() {
+        CacheStats stats = responses.stats();
+        return new SuggestionCacheStats(getGeneration(), responses.estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), stats.averageLoadPenalty() / 1_000_000.0);
+    }
+
+    @Override
+    public long getGeneration() {
+        return this.suggestionDataStructure.getGeneration();
+    }
+
+    private SuggestionDataStructure structureFor(SuggestionRanking ranking) {
+        SuggestionDataStructure structure = structuresByRanking.get(ranking);
+        if (structure == null)
+            throw new IllegalArgumentException("No suggestion structure serves ranking " + ranking);
+        return structure;
+    }
+
+    private SuggestionResponse load(CacheKey key) {
+        SuggestionDataStructure structure = structuresByRanking.get(key.ranking());
+        List<Suggestion> suggestions;
+        if (key.maxEdits() > 0) {
+            suggestions = structure.getFuzzyTopSuggestions(key.query(), key.maxEdits());
+        } else {
+            byte[] payload = structure.getTopSuggestionsPayload(key.query());
+            if (payload != null)
+                return new SuggestionResponse(payload, key.generation());
+            suggestions = structure.getTopSuggestions(key.query());
+        }
+
+        try {
+            return new SuggestionResponse(objectMapper.writeValueAsBytes(suggestions), key.generation());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize suggestions for query: " + key.query(), e);
+        }
+    }
+
+    private record CacheKey(String query, int maxEdits, SuggestionRanking ranking, long generation) {
+    }
 }
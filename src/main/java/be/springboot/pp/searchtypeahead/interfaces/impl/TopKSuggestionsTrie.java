@@ -1,93 +1,288 @@
 package be.springboot.pp.searchtypeahead.interfaces.impl;
 
 import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
 import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionStructureStats;
 import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
 import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionScorer;
 import be.springboot.pp.searchtypeahead.repositories.QueryFrequencyRepository;
+import be.springboot.pp.searchtypeahead.internal.FuzzyTrieSearcher;
+import be.springboot.pp.searchtypeahead.internal.ShardedTopKTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TopKTrieBuilder;
+import be.springboot.pp.searchtypeahead.internal.TrieFootprint;
 import be.springboot.pp.searchtypeahead.internal.TrieNode;
+import be.springboot.pp.searchtypeahead.internal.TrieSnapshot;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 
+/*
+* The trie is built as one shard per first char, in parallel on buildPool (see ShardedTopKTrieBuilder),
+* and all shards are published together as one snapshot. reloadShard() rebuilds a single one of them.
+*
+* The first build runs on buildPool too, after the constructor returned, so the Spring context doesn't
+* wait for it. Until it lands the empty trie is served and isReady() is false.
+* */
+@Slf4j
 @Service
+@ConditionalOnProperty(prefix = "search.typeahead", name = "trie", havingValue = "topk", matchIfMissing = true)
 public class TopKSuggestionsTrie implements SuggestionDataStructure {
 
-    private TrieNode root;
-    private int threshold;
+    // readers only do snapshot.get(), a published trie is never touched again
+    private final AtomicReference<TrieSnapshot<TrieNode>> snapshot =
+            new AtomicReference<>(new TrieSnapshot<>(new TrieNode(), 0, System.currentTimeMillis()));
+    private final Object reloadLock = new Object(); // serializes writers only
+    private int threshold = SuggestionConstants.MAX_ALLOWED_SUGGESTIONS;
     private final QueryFrequencyRepository queryFrequencyRepository;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+    private final int fuzzyMaxVisitedNodes;
+    private final SuggestionScorer scorer;
+    private final ForkJoinPool buildPool;
+    private long referenceMillis; // time every score of the current trie is taken against, guarded by reloadLock
+    private volatile TrieFootprint footprint = new TrieFootprint(1, 0); // as of the last full reload, plus nodes added by deltas
+    private volatile long lastReloadDurationMillis = -1;
+    private volatile Date loadedWatermark; // max updated_at of the rows in the published trie
+    private volatile CompletableFuture<Void> initialBuild = CompletableFuture.completedFuture(null);
 
     @Autowired
-    public TopKSuggestionsTrie(QueryFrequencyRepository queryFrequencyRepository, Optional<Integer> maxSug) {
+    public TopKSuggestionsTrie(QueryFrequencyRepository queryFrequencyRepository, Optional<Integer> maxSug,
+                               ObjectMapper objectMapper,
+                               @Value("${search.typeahead.build.page-size:10000}") int pageSize,
+                               @Value("${search.typeahead.fuzzy.max-visited-nodes:5000}") int fuzzyMaxVisitedNodes,
+                               @Value("${search.typeahead.build.parallelism:0}") int buildParallelism,
+                               LifetimeFrequencyScorer scorer) {
+        this(queryFrequencyRepository, maxSug, objectMapper, pageSize, fuzzyMaxVisitedNodes, buildParallelism, (SuggestionScorer) scorer);
+    }
+
+    // same trie ranked by another scorer, see TrendingSuggestionsTrie
+    protected TopKSuggestionsTrie(QueryFrequencyRepository queryFrequencyRepository, Optional<Integer> maxSug,
+                                  ObjectMapper objectMapper, int pageSize, int fuzzyMaxVisitedNodes,
+                                  int buildParallelism, SuggestionScorer scorer) {
         this.queryFrequencyRepository = queryFrequencyRepository;
-        this.root = new TrieNode();
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+        this.fuzzyMaxVisitedNodes = fuzzyMaxVisitedNodes;
+        this.scorer = scorer;
+        // 0 = one build thread per core
+        this.buildPool = new ForkJoinPool(buildParallelism > 0 ? buildParallelism : Runtime.getRuntime().availableProcessors());
         init(maxSug.orElseGet(() -> threshold));
     }
 
     @Override
     public void init(int maxSuggestions) {
         this.threshold = Math.max(threshold, maxSuggestions);
-        constructTrie(root);
+        initialBuild = CompletableFuture.runAsync(this::reload, buildPool)
+                .whenComplete((ignored, error) -> {
+                    // not ready forever would stall the sync worker, it retries with a full reload instead
+                    if (error != null)
+                        log.error("Initial {} trie build failed, the sync worker will retry it", getRanking(), error);
+                });
+    }
+
+    // done once the first build ran, whether or not it succeeded (then getLoadedWatermark() stays null)
+    @Override
+    public boolean isReady() {
+        return initialBuild.isDone();
     }
 
     @Override
     public List<Suggestion> getTopSuggestions(String query) {
-        TrieNode cur = root;
+        TrieNode node = findNode(query);
+        return node == null ? new ArrayList<>() : node.getTopSuggestions();
+    }
+
+    // one walk down the path of word, every node met on the way answers its prefix
+    @Override
+    public List<List<Suggestion>> getTopSuggestionsAlongPath(String word) {
+        List<List<Suggestion>> suggestions = new ArrayList<>(word.length());
+        TrieNode cur = snapshot.get().trie();
+        for (int i = 0; i < word.length(); i++) {
+            cur = cur == null ? null : cur.getChild(word.charAt(i));
+            suggestions.add(cur == null ? Collections.emptyList() : cur.getTopSuggestions());
+        }
+        return suggestions;
+    }
+
+    @Override
+    public List<Suggestion> getFuzzyTopSuggestions(String query, int maxEdits) {
+        FuzzyTrieSearcher searcher = new FuzzyTrieSearcher(query, maxEdits, SuggestionConstants.MAX_QUERY_SIZE, fuzzyMaxVisitedNodes);
+        return searcher.search(snapshot.get().trie(), threshold);
+    }
+
+    @Override
+    public byte[] getTopSuggestionsPayload(String query) {
+        TrieNode node = findNode(query);
+        return node == null ? SuggestionConstants.EMPTY_SUGGESTIONS_PAYLOAD : node.getPayload();
+    }
+
+    private TrieNode findNode(String query) {
+        TrieNode cur = snapshot.get().trie();
         int verticalTraveller = 0;
         while (true) {
-            cur = cur.getPointers().get(query.charAt(verticalTraveller) - 'a');
-            if (cur == null) return new ArrayList<>();
+            cur = cur.getChild(query.charAt(verticalTraveller));
+            if (cur == null) return null;
             verticalTraveller++;
-            if (verticalTraveller == query.length()) return cur.getTopSuggestions();
+            if (verticalTraveller == query.length()) return cur;
         }
     }
 
+    @Override
+    public SuggestionRanking getRanking() {
+        return scorer.getRanking();
+    }
+
     @Override
     public void reload() {
-        TrieNode temp = new TrieNode();
-        constructTrie(temp);
-        root = temp;
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            referenceMillis = System.currentTimeMillis();
+            // taken before the build, anything written while it runs comes in as a delta
+            Date mark = queryFrequencyRepository.findMaxUpdatedAt();
+            TrieNode temp = constructTrie(); // private to this thread until published
+            snapshot.set(snapshot.get().next(temp));
+            loadedWatermark = mark != null ? mark : new Date(0);
+            lastReloadDurationMillis = (System.nanoTime() - start) / 1_000_000;
+            footprint = TrieFootprint.of(temp);
+        }
     }
 
-    public List<Suggestion> insert(String query, long frequency, int depth, TrieNode cur) {
-        if (depth == query.length() || depth == SuggestionConstants.MAX_QUERY_SIZE) { // termination condition
-            Set<Suggestion> suggestions = new HashSet<>(cur.getTopSuggestions());
-            suggestions.add(new Suggestion(query, (int) frequency));
-            return updateSuggestionAndGet(suggestions, cur);
+    @Override
+    public void reloadShard(char firstChar) {
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            ShardedTopKTrieBuilder builder = new ShardedTopKTrieBuilder(SuggestionConstants.MAX_QUERY_SIZE);
+            queryFrequencyRepository.forEachPage(String.valueOf(firstChar), pageSize, page -> {
+                for (QueryFrequency entry : page)
+                    builder.add(entry.getQuery(), scorer.score(entry, referenceMillis));
+            });
+            TrieSnapshot<TrieNode> current = snapshot.get();
+            TrieNode shard = builder.buildShard(firstChar, threshold, this::renderPayload);
+            TrieNode root = ShardedTopKTrieBuilder.replaceShard(current.trie(), firstChar, shard, threshold, this::renderPayload);
+            snapshot.set(current.next(root));
+            lastReloadDurationMillis = (System.nanoTime() - start) / 1_000_000;
+            footprint = TrieFootprint.of(root);
         }
-        if (cur.getPointers().get(query.charAt(depth) - 'a') == null) {
-            cur.getPointers().set(query.charAt(depth) - 'a', new TrieNode());
+    }
+
+    /*
+    * Copy-on-write patch of the published trie: only nodes on the changed paths are copied
+    * (every other subtree is shared with the current snapshot), their top-K lists are
+    * recomputed deepest first, and the new root is published as the next generation.
+    * Rows are applied with their absolute frequency, so re-applying a row is harmless.
+    * */
+    @Override
+    public void applyUpdates(List<QueryFrequency> changedEntries) {
+        if (changedEntries.isEmpty()) return;
+        synchronized (reloadLock) {
+            if (System.currentTimeMillis() - referenceMillis > scorer.getRebuildAfterMillis()) {
+                reload(); // scores have drifted too far from referenceMillis, rebase them
+                return;
+            }
+            TrieSnapshot<TrieNode> current = snapshot.get();
+            Map<TrieNode, Integer> copiedNodes = new IdentityHashMap<>(); // node -> depth
+            TrieNode root = new TrieNode(current.trie());
+            copiedNodes.put(root, 0);
+            int createdNodes = 0;
+            Date mark = loadedWatermark != null ? loadedWatermark : new Date(0);
+            for (QueryFrequency entry : changedEntries) {
+                createdNodes += patchPath(root, entry.getQuery(), scorer.score(entry, referenceMillis), copiedNodes);
+                if (entry.getUpdatedAt() != null && entry.getUpdatedAt().after(mark))
+                    mark = entry.getUpdatedAt();
+            }
+
+            List<Map.Entry<TrieNode, Integer>> deepestFirst = new ArrayList<>(copiedNodes.entrySet());
+            deepestFirst.sort((e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()));
+            for (Map.Entry<TrieNode, Integer> entry : deepestFirst)
+                TopKTrieBuilder.computeTopSuggestions(entry.getKey(), threshold, this::renderPayload);
+
+            snapshot.set(current.next(root));
+            loadedWatermark = mark;
+            TrieFootprint before = footprint;
+            footprint = new TrieFootprint(before.nodeCount() + createdNodes, before.estimatedSizeBytes());
         }
-        TrieNode next = cur.getPointers().get(query.charAt(depth) - 'a');
-        Set<Suggestion> allSuggestions = new HashSet<>();
-        if (depth == query.length() - 1)
-            next.setEOW(true);
-        insert(query, frequency, depth + 1, next);
-        allSuggestions.addAll(cur.getTopSuggestions());
-        for (int i = 0; i < 26; i++) {
-            TrieNode node = cur.getPointers().get(i);
-            if (node != null)
-                allSuggestions.addAll(node.getTopSuggestions());
+    }
+
+    @Override
+    public long getGeneration() {
+        return snapshot.get().generation();
+    }
+
+    @Override
+    public SuggestionStructureStats getStats() {
+        TrieSnapshot<TrieNode> current = snapshot.get();
+        TrieFootprint currentFootprint = footprint;
+        return new SuggestionStructureStats(getRanking(), current.generation(), currentFootprint.nodeCount(),
+                currentFootprint.estimatedSizeBytes(), current.builtAtMillis(), lastReloadDurationMillis);
+    }
+
+    @Override
+    public Date getLoadedWatermark() {
+        return loadedWatermark;
+    }
+
+    // returns how many nodes had to be created for the path
+    private int patchPath(TrieNode root, String query, long frequency, Map<TrieNode, Integer> copiedNodes) {
+        int createdNodes = 0;
+        TrieNode cur = root;
+        int depth = Math.min(query.length(), SuggestionConstants.MAX_QUERY_SIZE);
+        for (int i = 0; i < depth; i++) {
+            char c = query.charAt(i);
+            TrieNode next = cur.getChild(c);
+            if (next == null || !copiedNodes.containsKey(next)) {
+                if (next == null) createdNodes++;
+                next = next == null ? new TrieNode() : new TrieNode(next);
+                copiedNodes.put(next, i + 1);
+                cur.putChild(c, next);
+            }
+            cur = next;
         }
-        return updateSuggestionAndGet(allSuggestions, cur);
+        if (depth == query.length())
+            cur.setEOW(true);
+        cur.getTerminalSuggestions().removeIf(suggestion -> suggestion.getSuggestion().equals(query));
+        cur.getTerminalSuggestions().add(new Suggestion(query, (int) frequency));
+        return createdNodes;
     }
 
-    private List<Suggestion> updateSuggestionAndGet(Set<Suggestion> sortedSuggestions, TrieNode cur) {
-        List<Suggestion> allSuggestionList = new ArrayList<>();
-        allSuggestionList.addAll(sortedSuggestions);
-        allSuggestionList.sort((s1, s2) -> Integer.compare(s2.getFrequency(), s1.getFrequency()));
-        cur.setTopSuggestions(allSuggestionList.subList(0, Math.min(allSuggestionList.size(), threshold)));
-        return cur.getTopSuggestions();
+    // rows are streamed page by page straight into the builder instead of loading the whole table first
+    public TrieNode constructTrie() {
+        ShardedTopKTrieBuilder builder = new ShardedTopKTrieBuilder(SuggestionConstants.MAX_QUERY_SIZE);
+        queryFrequencyRepository.forEachPage(pageSize, page -> {
+            for (QueryFrequency entry : page)
+                builder.add(entry.getQuery(), scorer.score(entry, referenceMillis));
+        });
+        return builder.build(threshold, this::renderPayload, buildPool);
     }
 
-    public void constructTrie(TrieNode cur) {
-        List<QueryFrequency> queryFrequencyList = queryFrequencyRepository.findAll();
-        for (QueryFrequency entry : queryFrequencyList)
-            this.insert(entry.getQuery(), entry.getFrequency(), 0, cur);
+    @PreDestroy
+    public void shutdown() {
+        buildPool.shutdown();
+    }
+
+    // nodes are only built on reload, so every response body is rendered once here instead of once per request
+    private byte[] renderPayload(List<Suggestion> suggestions) {
+        try {
+            return objectMapper.writeValueAsBytes(suggestions);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to render suggestions: " + suggestions, e);
+        }
     }
 }
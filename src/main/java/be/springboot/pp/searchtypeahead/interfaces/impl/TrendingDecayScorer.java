@@ -0,0 +1,56 @@
+package be.springboot.pp.searchtypeahead.interfaces.impl;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
+import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionScorer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+* Exponential decay with a half-life, kept with forward decay so that a hit never has to be
+* revisited: a hit at time t is worth 2^(t / halfLife) forever, and the decayed count of a query
+* at time `now` is sum(2^(t / halfLife)) / 2^(now / halfLife). The divisor is the same for every
+* query, so ranking by the stored sum is ranking by the decayed count, and recording a hit is a
+* single `score = score + increment` on its row, no periodic pass over the table.
+*
+* The sum outgrows a double after ~1000 half-lives, so trending_score stores its log2 and rows are
+* updated with log-sum-exp (see QueryFrequencyBatchWriter), which never overflows.
+* */
+@Component
+public class TrendingDecayScorer implements SuggestionScorer {
+
+    // past this many half-lives a trie's scores (decayed to its build time) would outgrow an int
+    private static final int MAX_HALF_LIVES_PER_BUILD = 8;
+
+    private final double halfLifeMillis;
+
+    public TrendingDecayScorer(@Value("${search.typeahead.trending.half-life-millis:86400000}") long halfLifeMillis) {
+        if (halfLifeMillis <= 0)
+            throw new IllegalArgumentException("search.typeahead.trending.half-life-millis must be positive");
+        this.halfLifeMillis = halfLifeMillis;
+    }
+
+    @Override
+    public SuggestionRanking getRanking() {
+        return SuggestionRanking.TRENDING;
+    }
+
+    // log2 of what `hits` hits made at `atMillis` add to trending_score
+    public double logIncrement(long hits, long atMillis) {
+        return Math.log(hits) / Math.log(2) + atMillis / halfLifeMillis;
+    }
+
+    // decayed hit count as of referenceMillis, hits made after it count for more than 1
+    @Override
+    public long score(QueryFrequency entry, long referenceMillis) {
+        Double logScore = entry.getTrendingScore();
+        if (logScore == null) return 0; // not hit since trending was introduced
+        double decayed = Math.pow(2, logScore - referenceMillis / halfLifeMillis);
+        return Math.min(Math.round(decayed), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long getRebuildAfterMillis() {
+        return (long) (halfLifeMillis * MAX_HALF_LIVES_PER_BUILD);
+    }
+}
@@ -0,0 +1,36 @@
+package be.springboot.pp.searchtypeahead.interfaces.impl;
+
+import be.springboot.pp.searchtypeahead.repositories.QueryFrequencyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Fallback;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/*
+* A second TopKSuggestionsTrie ranked by the decayed trending_score instead of the lifetime frequency,
+* served next to the lifetime one (`/search/suggestion?rank=trending`).
+*
+* @Fallback keeps it out of the way of the plain SuggestionDataStructure injection points,
+* those still get the lifetime structure selected by `search.typeahead.trie`.
+*
+* enable it with `search.typeahead.trending.enabled=true`
+* */
+@Fallback
+@Service
+@ConditionalOnProperty(prefix = "search.typeahead.trending", name = "enabled", havingValue = "true")
+public class TrendingSuggestionsTrie extends TopKSuggestionsTrie {
+
+    @Autowired
+    public TrendingSuggestionsTrie(QueryFrequencyRepository queryFrequencyRepository, Optional<Integer> maxSug,
+                                   ObjectMapper objectMapper,
+                                   @Value("${search.typeahead.build.page-size:10000}") int pageSize,
+                                   @Value("${search.typeahead.fuzzy.max-visited-nodes:5000}") int fuzzyMaxVisitedNodes,
+                                   @Value("${search.typeahead.build.parallelism:0}") int buildParallelism,
+                                   TrendingDecayScorer scorer) {
+        super(queryFrequencyRepository, maxSug, objectMapper, pageSize, fuzzyMaxVisitedNodes, buildParallelism, scorer);
+    }
+}
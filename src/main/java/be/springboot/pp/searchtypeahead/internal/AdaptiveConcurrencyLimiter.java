@@ -0,0 +1,66 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+* AIMD concurrency limit, the same idea as Netflix concurrency-limits' AIMDLimit: instead of a fixed
+* rate, cap the number of requests in flight and let the cap follow the latency we observe.
+*
+*   - a request that finished under `latencyThresholdNanos` while we were using at least half of the
+*     limit grows the limit by 1 (additive increase, nothing to learn while mostly idle)
+*   - a request slower than that shrinks it to `limit * backoffRatio` (multiplicative decrease)
+*
+* Requests have two priorities. Reads may use the whole limit, writes only `writeShare` of it, so
+* as the limit shrinks under load the writes are turned away first and reads keep flowing.
+* tryAcquire() never blocks, the caller rejects right away instead of queueing.
+* */
+public class AdaptiveConcurrencyLimiter {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final double writeShare;
+    private volatile double limit; // written under the monitor, read without it
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                                      long latencyThresholdNanos, double writeShare) {
+        if (minLimit < 1 || maxLimit < minLimit)
+            throw new IllegalArgumentException("Invalid limits: min " + minLimit + ", max " + maxLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.writeShare = writeShare;
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+    }
+
+    // true if the request may go on, it then has to call release() exactly once
+    public boolean tryAcquire(boolean write) {
+        int cap = write ? Math.max(1, (int) (limit * writeShare)) : (int) limit;
+        while (true) {
+            int current = inFlight.get();
+            if (current >= cap) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    public void release(long elapsedNanos) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (elapsedNanos > latencyThresholdNanos)
+                limit = Math.max(minLimit, limit * backoffRatio);
+            else if (current * 2 >= limit)
+                limit = Math.min(maxLimit, limit + 1);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,186 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/*
+* Read-only trie laid out in flat primitive arrays instead of one object per node.
+*
+* Nodes are numbered in BFS order, so children of a node are always contiguous:
+* children of node n are the nodes [childStart[n], childStart[n + 1]) and are sorted
+* by their edge char (label), which lets us binary search them while walking.
+*
+* Top-K of node n is topIds[topStart[n] .. topStart[n + 1]), each id pointing
+* into the shared suggestions table, so a query string is stored only once no matter
+* how many ancestors keep it in their top-K.
+*
+* Per node this costs 4 (childStart) + 2 (label) + 4 (topStart) + 4 * K (topIds) bytes,
+* against ~200+ bytes for a TrieNode with its 26 slot ArrayList.
+*
+* The arrays are held as nio buffers so the very same trie can be served either from the heap
+* (built by CompactTrieBuilder) or straight out of a memory mapped snapshot file (see
+* CompactTrieSnapshotFile). In the mapped case the suggestions table is a frequency column plus
+* UTF-8 query bytes, and a Suggestion is only decoded when a lookup returns it.
+* */
+public class CompactTrie {
+
+    public static final int ROOT = 0;
+
+    private final IntBuffer childStart;
+    private final CharBuffer label;
+    private final IntBuffer topStart;
+    private final IntBuffer topIds;
+
+    // either the decoded table (heap trie) or the three raw columns (mapped trie)
+    private final Suggestion[] suggestions;
+    private final IntBuffer frequencies;
+    private final IntBuffer queryOffsets;
+    private final ByteBuffer queryBytes;
+
+    CompactTrie(IntBuffer childStart, CharBuffer label, IntBuffer topStart, IntBuffer topIds, Suggestion[] suggestions) {
+        this.childStart = childStart;
+        this.label = label;
+        this.topStart = topStart;
+        this.topIds = topIds;
+        this.suggestions = suggestions;
+        this.frequencies = null;
+        this.queryOffsets = null;
+        this.queryBytes = null;
+    }
+
+    CompactTrie(IntBuffer childStart, CharBuffer label, IntBuffer topStart, IntBuffer topIds,
+                IntBuffer frequencies, IntBuffer queryOffsets, ByteBuffer queryBytes) {
+        this.childStart = childStart;
+        this.label = label;
+        this.topStart = topStart;
+        this.topIds = topIds;
+        this.suggestions = null;
+        this.frequencies = frequencies;
+        this.queryOffsets = queryOffsets;
+        this.queryBytes = queryBytes;
+    }
+
+    public int getNodeCount() {
+        return label.limit();
+    }
+
+    public int getSuggestionCount() {
+        return suggestions != null ? suggestions.length : frequencies.limit();
+    }
+
+    // exact for the arrays, estimated for the decoded suggestions of a heap trie, walks them so call it once per build
+    public long getEstimatedSizeBytes() {
+        long bytes = (long) getNodeCount() * (Integer.BYTES + Character.BYTES + Integer.BYTES) + 2L * Integer.BYTES
+                + (long) topIds.limit() * Integer.BYTES;
+        if (suggestions == null)
+            return bytes + (long) frequencies.limit() * Integer.BYTES + (long) queryOffsets.limit() * Integer.BYTES + queryBytes.limit();
+        for (Suggestion suggestion : suggestions)
+            bytes += 64 + suggestion.getSuggestion().length(); // Suggestion + String + its byte[] header
+        return bytes;
+    }
+
+    public boolean isMapped() {
+        return suggestions == null;
+    }
+
+    // returns -1 if the path is not present, walking does not allocate anything
+    public int findNode(CharSequence query) {
+        int node = ROOT;
+        for (int i = 0; i < query.length() && node >= 0; i++)
+            node = findChild(node, query.charAt(i));
+        return node;
+    }
+
+    public int findChild(int node, char c) {
+        int lo = childStart.get(node);
+        int hi = childStart.get(node + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char cur = label.get(mid);
+            if (cur < c) lo = mid + 1;
+            else if (cur > c) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    public List<Suggestion> getTopSuggestions(String query) {
+        int node = findNode(query);
+        if (node < 0) return Collections.emptyList();
+        return getTopSuggestions(node);
+    }
+
+    public List<Suggestion> getTopSuggestions(int node) {
+        int from = topStart.get(node);
+        int to = topStart.get(node + 1);
+        if (from == to) return Collections.emptyList();
+        return new TopKView(from, to);
+    }
+
+    public String getQuery(int id) {
+        if (suggestions != null) return suggestions[id].getSuggestion();
+        int from = queryOffsets.get(id);
+        byte[] bytes = new byte[queryOffsets.get(id + 1) - from];
+        queryBytes.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getFrequency(int id) {
+        return suggestions != null ? suggestions[id].getFrequency() : frequencies.get(id);
+    }
+
+    private Suggestion getSuggestion(int id) {
+        return suggestions != null ? suggestions[id] : new Suggestion(getQuery(id), frequencies.get(id));
+    }
+
+    // raw columns, used by CompactTrieSnapshotFile to write the trie out
+    int getTopIdCount() {
+        return topIds.limit();
+    }
+
+    int childStartAt(int node) {
+        return childStart.get(node);
+    }
+
+    char labelAt(int node) {
+        return label.get(node);
+    }
+
+    int topStartAt(int node) {
+        return topStart.get(node);
+    }
+
+    int topIdAt(int index) {
+        return topIds.get(index);
+    }
+
+    // view over the top-K slice of a node, the only allocation made for a lookup on a heap trie
+    private final class TopKView extends AbstractList<Suggestion> implements RandomAccess {
+        private final int from;
+        private final int size;
+
+        private TopKView(int from, int to) {
+            this.from = from;
+            this.size = to - from;
+        }
+
+        @Override
+        public Suggestion get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            return getSuggestion(topIds.get(from + index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
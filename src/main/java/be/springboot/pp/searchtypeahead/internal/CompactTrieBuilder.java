@@ -0,0 +1,94 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/*
+* Collects (query, frequency) pairs and lays them out as a CompactTrie in one go.
+*
+* Every trie node maps to a contiguous range of the sorted entries (all the queries sharing
+* that node's prefix), nodes are created breadth first from those ranges, which is what
+* keeps siblings next to each other in CompactTrie.
+* */
+public class CompactTrieBuilder {
+
+    private final QueryEntries entries = new QueryEntries();
+
+    public CompactTrieBuilder add(String query, long frequency) {
+        entries.add(query, frequency);
+        return this;
+    }
+
+    public CompactTrie build(int maxSuggestions, int maxDepth) {
+        QueryEntries.Entry[] sorted = entries.sortedUnique();
+        int n = sorted.length;
+
+        Suggestion[] suggestions = new Suggestion[n];
+        long maxNodes = 1;
+        for (int i = 0; i < n; i++) {
+            suggestions[i] = new Suggestion(sorted[i].query(), (int) sorted[i].frequency());
+            maxNodes += Math.min(sorted[i].query().length(), maxDepth);
+        }
+        if (maxNodes > Integer.MAX_VALUE - 1)
+            throw new IllegalStateException("Too many trie nodes: " + maxNodes);
+
+        int capacity = (int) maxNodes;
+        int[] childStart = new int[capacity + 1];
+        char[] label = new char[capacity];
+        int[] rangeFrom = new int[capacity];
+        int[] rangeTo = new int[capacity];
+        int[] depth = new int[capacity];
+        int[] topStart = new int[capacity + 1];
+        long topCapacity = (long) capacity * maxSuggestions;
+        if (topCapacity > Integer.MAX_VALUE - 1)
+            throw new IllegalStateException("Too many top-K entries: " + topCapacity);
+        int[] topIds = new int[(int) topCapacity];
+        int[] topBuffer = new int[maxSuggestions];
+
+        rangeFrom[0] = 0;
+        rangeTo[0] = n;
+        int nextNode = 1;
+        int topSize = 0;
+
+        // the node array doubles as the BFS queue, node ids are handed out in visiting order
+        for (int node = 0; node < nextNode; node++) {
+            int from = rangeFrom[node];
+            int to = rangeTo[node];
+            int d = depth[node];
+
+            childStart[node] = nextNode;
+            if (d < maxDepth) {
+                int i = from;
+                while (i < to && sorted[i].query().length() <= d) i++; // queries ending exactly at this node
+                while (i < to) {
+                    char c = sorted[i].query().charAt(d);
+                    int j = i + 1;
+                    while (j < to && sorted[j].query().charAt(d) == c) j++;
+                    label[nextNode] = c;
+                    rangeFrom[nextNode] = i;
+                    rangeTo[nextNode] = j;
+                    depth[nextNode] = d + 1;
+                    nextNode++;
+                    i = j;
+                }
+            }
+
+            topStart[node] = topSize;
+            int found = QueryEntries.selectTopK(sorted, from, to, topBuffer);
+            System.arraycopy(topBuffer, 0, topIds, topSize, found);
+            topSize += found;
+        }
+        childStart[nextNode] = nextNode;
+        topStart[nextNode] = topSize;
+
+        return new CompactTrie(
+                IntBuffer.wrap(Arrays.copyOf(childStart, nextNode + 1)),
+                CharBuffer.wrap(Arrays.copyOf(label, nextNode)),
+                IntBuffer.wrap(Arrays.copyOf(topStart, nextNode + 1)),
+                IntBuffer.wrap(Arrays.copyOf(topIds, topSize)),
+                suggestions);
+    }
+}
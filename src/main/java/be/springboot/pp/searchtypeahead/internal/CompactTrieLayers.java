@@ -0,0 +1,86 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+* What a CompactSuggestionTrie snapshot serves: the compact (possibly mapped) base trie plus the
+* rows changed since it was built, kept in a small heap overlay (a TrieNode trie of their own).
+*
+* A lookup merges the base's top-K with the overlay's. A row in the overlay hides its stale copy
+* in the base, and frequencies only grow, so anything that could rank in the merged top-K is in
+* one of the two lists. Layers are never mutated, withOverlay() returns new ones over the same base.
+* */
+public record CompactTrieLayers(CompactTrie base, TrieNode overlay, Map<String, Long> overlayRows) {
+
+    public static CompactTrieLayers of(CompactTrie base) {
+        return new CompactTrieLayers(base, new TrieNode(), Collections.emptyMap());
+    }
+
+    // same base, the overlay rebuilt from overlayRows (query -> absolute frequency)
+    public CompactTrieLayers withOverlay(Map<String, Long> overlayRows, int maxSuggestions, int maxDepth) {
+        TopKTrieBuilder builder = new TopKTrieBuilder(maxDepth);
+        overlayRows.forEach(builder::add);
+        return new CompactTrieLayers(base, builder.build(maxSuggestions), Collections.unmodifiableMap(new HashMap<>(overlayRows)));
+    }
+
+    public List<Suggestion> getTopSuggestions(String query, int maxSuggestions) {
+        List<Suggestion> baseTop = base.getTopSuggestions(query);
+        if (overlayRows.isEmpty()) return baseTop;
+        TrieNode node = overlay;
+        for (int i = 0; i < query.length() && node != null; i++)
+            node = node.getChild(query.charAt(i));
+        return merge(baseTop, node, maxSuggestions);
+    }
+
+    // the answers for every prefix of word, walking both tries once
+    public List<List<Suggestion>> getTopSuggestionsAlongPath(String word, int maxSuggestions) {
+        List<List<Suggestion>> suggestions = new ArrayList<>(word.length());
+        int node = CompactTrie.ROOT;
+        TrieNode overlayNode = overlay;
+        for (int i = 0; i < word.length(); i++) {
+            node = node < 0 ? -1 : base.findChild(node, word.charAt(i));
+            List<Suggestion> baseTop = node < 0 ? Collections.emptyList() : base.getTopSuggestions(node);
+            if (overlayRows.isEmpty()) {
+                suggestions.add(baseTop);
+                continue;
+            }
+            overlayNode = overlayNode == null ? null : overlayNode.getChild(word.charAt(i));
+            suggestions.add(merge(baseTop, overlayNode, maxSuggestions));
+        }
+        return suggestions;
+    }
+
+    // a new base of the rows in this one and changedRows, the changed frequency wins for a row in both
+    public CompactTrie compact(Map<String, Long> changedRows, int maxSuggestions, int maxDepth) {
+        CompactTrieBuilder builder = new CompactTrieBuilder();
+        for (int id = 0; id < base.getSuggestionCount(); id++) {
+            String query = base.getQuery(id);
+            if (!changedRows.containsKey(query))
+                builder.add(query, base.getFrequency(id));
+        }
+        changedRows.forEach(builder::add);
+        return builder.build(maxSuggestions, maxDepth);
+    }
+
+    // the base's top-K without the rows the overlay holds newer copies of, merged with the overlay's top-K
+    private List<Suggestion> merge(List<Suggestion> baseTop, TrieNode overlayNode, int maxSuggestions) {
+        if (overlayNode == null) {
+            boolean stale = false;
+            for (Suggestion suggestion : baseTop)
+                stale |= overlayRows.containsKey(suggestion.getSuggestion());
+            if (!stale) return baseTop;
+        }
+        List<Suggestion> fresh = new ArrayList<>(baseTop.size());
+        for (Suggestion suggestion : baseTop)
+            if (!overlayRows.containsKey(suggestion.getSuggestion()))
+                fresh.add(suggestion);
+        List<Suggestion> changed = overlayNode == null ? Collections.emptyList() : overlayNode.getTopSuggestions();
+        return TopKTrieBuilder.mergeTopK(List.of(changed, fresh), maxSuggestions);
+    }
+}
@@ -0,0 +1,161 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/*
+* On-disk format of a CompactTrie, laid out so that a mapped file *is* the trie: opening a
+* snapshot maps it and wraps the sections in buffer views, nothing is parsed or copied.
+*
+* All values are big endian (ByteBuffer's default), sections follow each other without gaps:
+*
+*   header (48 bytes)
+*     int  magic               "TAHT"
+*     int  version             FORMAT_VERSION, anything else is refused
+*     int  maxSuggestions      K the trie was built with
+*     int  maxDepth            query prefix length the trie was built with
+*     long builtAtMillis
+*     long watermarkMillis     max(updated_at) of the rows in the snapshot, deltas start from there
+*     int  nodeCount
+*     int  topIdCount
+*     int  suggestionCount
+*     int  queryByteCount
+*   int  childStart[nodeCount + 1]
+*   int  topStart[nodeCount + 1]
+*   int  topIds[topIdCount]
+*   int  frequencies[suggestionCount]
+*   int  queryOffsets[suggestionCount + 1]   into queryBytes
+*   char labels[nodeCount]
+*   byte queryBytes[queryByteCount]          UTF-8, one query after the other
+*
+* Files are written next to the target and moved over it, so a reader never maps a half
+* written snapshot and a trie still mapped from the previous file keeps working.
+* A single mapping is limited to 2GB, which is far above what a K=4, depth 5 trie takes.
+* */
+public final class CompactTrieSnapshotFile {
+
+    public static final int MAGIC = 0x54414854;
+    public static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+
+    private CompactTrieSnapshotFile() {
+    }
+
+    public record Snapshot(CompactTrie trie, int maxSuggestions, int maxDepth, long builtAtMillis, long watermarkMillis) {
+    }
+
+    public static void write(CompactTrie trie, int maxSuggestions, int maxDepth, long watermarkMillis, Path path) throws IOException {
+        int nodeCount = trie.getNodeCount();
+        int topIdCount = trie.getTopIdCount();
+        int suggestionCount = trie.getSuggestionCount();
+
+        // the header needs the byte count up front, so queries are encoded twice rather than kept around
+        int[] queryLengths = new int[suggestionCount];
+        long queryByteCount = 0;
+        for (int id = 0; id < suggestionCount; id++) {
+            queryLengths[id] = trie.getQuery(id).getBytes(StandardCharsets.UTF_8).length;
+            queryByteCount += queryLengths[id];
+        }
+        long fileSize = fileSize(nodeCount, topIdCount, suggestionCount, queryByteCount);
+        if (fileSize > Integer.MAX_VALUE)
+            throw new IOException("Snapshot too large to be mapped: " + fileSize + " bytes");
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(maxSuggestions);
+            out.writeInt(maxDepth);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(watermarkMillis);
+            out.writeInt(nodeCount);
+            out.writeInt(topIdCount);
+            out.writeInt(suggestionCount);
+            out.writeInt((int) queryByteCount);
+
+            for (int node = 0; node <= nodeCount; node++) out.writeInt(trie.childStartAt(node));
+            for (int node = 0; node <= nodeCount; node++) out.writeInt(trie.topStartAt(node));
+            for (int i = 0; i < topIdCount; i++) out.writeInt(trie.topIdAt(i));
+            for (int id = 0; id < suggestionCount; id++) out.writeInt(trie.getFrequency(id));
+            int offset = 0;
+            for (int id = 0; id < suggestionCount; id++) {
+                out.writeInt(offset);
+                offset += queryLengths[id];
+            }
+            out.writeInt(offset);
+            for (int node = 0; node < nodeCount; node++) out.writeChar(trie.labelAt(node));
+            for (int id = 0; id < suggestionCount; id++) out.write(trie.getQuery(id).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Snapshot open(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+                throw new IOException("Not a trie snapshot (size " + size + "): " + path);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // stays valid after the channel is closed
+        }
+
+        if (buffer.getInt(0) != MAGIC) throw new IOException("Not a trie snapshot (bad magic): " + path);
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION)
+            throw new IOException("Unsupported trie snapshot version " + version + " (expected " + FORMAT_VERSION + "): " + path);
+        int maxSuggestions = buffer.getInt(8);
+        int maxDepth = buffer.getInt(12);
+        long builtAtMillis = buffer.getLong(16);
+        long watermarkMillis = buffer.getLong(24);
+        int nodeCount = buffer.getInt(32);
+        int topIdCount = buffer.getInt(36);
+        int suggestionCount = buffer.getInt(40);
+        int queryByteCount = buffer.getInt(44);
+        if (nodeCount < 1 || topIdCount < 0 || suggestionCount < 0 || queryByteCount < 0
+                || fileSize(nodeCount, topIdCount, suggestionCount, queryByteCount) != buffer.capacity())
+            throw new IOException("Corrupted trie snapshot (section sizes don't add up): " + path);
+
+        int offset = HEADER_BYTES;
+        IntBuffer childStart = buffer.slice(offset, (nodeCount + 1) * Integer.BYTES).asIntBuffer();
+        offset += (nodeCount + 1) * Integer.BYTES;
+        IntBuffer topStart = buffer.slice(offset, (nodeCount + 1) * Integer.BYTES).asIntBuffer();
+        offset += (nodeCount + 1) * Integer.BYTES;
+        IntBuffer topIds = buffer.slice(offset, topIdCount * Integer.BYTES).asIntBuffer();
+        offset += topIdCount * Integer.BYTES;
+        IntBuffer frequencies = buffer.slice(offset, suggestionCount * Integer.BYTES).asIntBuffer();
+        offset += suggestionCount * Integer.BYTES;
+        IntBuffer queryOffsets = buffer.slice(offset, (suggestionCount + 1) * Integer.BYTES).asIntBuffer();
+        offset += (suggestionCount + 1) * Integer.BYTES;
+        CharBuffer labels = buffer.slice(offset, nodeCount * Character.BYTES).asCharBuffer();
+        offset += nodeCount * Character.BYTES;
+        ByteBuffer queryBytes = buffer.slice(offset, queryByteCount);
+
+        // cheap end-of-section checks, catches a truncated or mixed up file without walking it
+        if (childStart.get(nodeCount) != nodeCount || topStart.get(nodeCount) != topIdCount
+                || queryOffsets.get(suggestionCount) != queryByteCount)
+            throw new IOException("Corrupted trie snapshot (section tails don't match the header): " + path);
+
+        CompactTrie trie = new CompactTrie(childStart, labels, topStart, topIds, frequencies, queryOffsets, queryBytes);
+        return new Snapshot(trie, maxSuggestions, maxDepth, builtAtMillis, watermarkMillis);
+    }
+
+    private static long fileSize(long nodeCount, long topIdCount, long suggestionCount, long queryByteCount) {
+        return HEADER_BYTES
+                + 2 * (nodeCount + 1) * Integer.BYTES
+                + topIdCount * Integer.BYTES
+                + (2 * suggestionCount + 1) * Integer.BYTES
+                + nodeCount * Character.BYTES
+                + queryByteCount;
+    }
+}
@@ -0,0 +1,68 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+* Count-Min sketch of query hits: `depth` rows of `width` counters, a query bumps one counter per
+* row and its estimate is the smallest of them. The estimate never undercounts, and overcounts by
+* at most ~ e * hits / width with probability 1 - e^-depth, in a fixed depth * width * 4 bytes
+* whatever the number of distinct queries.
+*
+* Counters are atomics, so add() is lock free. halve() ages every counter (TinyLFU style reset) so
+* the sketch follows what is hot now and not what was hot since startup, it races with concurrent
+* adds, which only blurs a handful of counts by one.
+* */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicIntegerArray counters;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1)
+            throw new IllegalArgumentException("Invalid sketch size: depth " + depth + ", width " + width);
+        this.depth = depth;
+        int roundedWidth = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1; // next power of two, for the mask
+        this.mask = roundedWidth - 1;
+        this.counters = new AtomicIntegerArray(depth * (mask + 1));
+    }
+
+    // returns the estimate of key once this hit is counted
+    public int add(String key) {
+        int hash = key.hashCode();
+        int step = rehash(hash);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int count = counters.incrementAndGet(indexOf(row, hash, step));
+            if (count < 0) // saturated, keep it there
+                counters.set(indexOf(row, hash, step), count = Integer.MAX_VALUE);
+            estimate = Math.min(estimate, count);
+        }
+        return estimate;
+    }
+
+    public int estimate(String key) {
+        int hash = key.hashCode();
+        int step = rehash(hash);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+            estimate = Math.min(estimate, counters.get(indexOf(row, hash, step)));
+        return estimate;
+    }
+
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++)
+            counters.set(i, counters.get(i) >>> 1);
+    }
+
+    // double hashing, row i probes hash + i * step, step is forced odd so rows never collapse onto each other
+    private int indexOf(int row, int hash, int step) {
+        return row * (mask + 1) + ((hash + row * step) & mask);
+    }
+
+    private static int rehash(int hash) {
+        hash *= 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return hash | 1;
+    }
+}
@@ -0,0 +1,95 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+* Typo tolerant prefix lookup: a DFS over the trie carrying one Levenshtein DP row per depth.
+*
+* - a node whose path is within maxEdits of the whole query is a match, its top-K is taken at
+*   that distance. A query keeps the smallest distance it was found at.
+* - the walk still goes below a match while the row minimum is under the best distance on the path,
+*   a deeper node may match closer (e.g. "ab" matches "a" at 1 but "ab" itself at 0) and its top-K
+*   can hold queries the ancestor's top-K had no room for.
+* - a branch is cut as soon as every cell of its row is above maxEdits (nothing below can match).
+* - the walk stops after maxVisitedNodes nodes, so a request can never wander the whole trie.
+*
+* Results from all matched branches go through one global top-K, closer matches first,
+* then by frequency. One instance per lookup, it is not thread-safe.
+* */
+public class FuzzyTrieSearcher {
+
+    private static final Comparator<Candidate> BY_DISTANCE_THEN_FREQUENCY =
+            Comparator.comparingInt(Candidate::distance)
+                    .thenComparing((c1, c2) -> Integer.compare(c2.suggestion().getFrequency(), c1.suggestion().getFrequency()));
+
+    private final String query;
+    private final int maxEdits;
+    private final int maxVisitedNodes;
+    private final int[][] rows;
+    private final Map<String, Candidate> candidates = new HashMap<>();
+    private int visitedNodes;
+
+    public FuzzyTrieSearcher(String query, int maxEdits, int maxDepth, int maxVisitedNodes) {
+        this.query = query;
+        // never allow editing the whole query away, that would just match the root
+        this.maxEdits = Math.max(0, Math.min(maxEdits, query.length() - 1));
+        this.maxVisitedNodes = maxVisitedNodes;
+        this.rows = new int[maxDepth + 1][query.length() + 1];
+        for (int i = 0; i <= query.length(); i++)
+            rows[0][i] = i;
+    }
+
+    public List<Suggestion> search(TrieNode root, int maxSuggestions) {
+        visit(root, 0, Integer.MAX_VALUE);
+        List<Candidate> sorted = new ArrayList<>(candidates.values());
+        sorted.sort(BY_DISTANCE_THEN_FREQUENCY);
+        List<Suggestion> top = new ArrayList<>(Math.min(maxSuggestions, sorted.size()));
+        for (int i = 0; i < sorted.size() && i < maxSuggestions; i++)
+            top.add(sorted.get(i).suggestion());
+        return top;
+    }
+
+    // bestOnPath: smallest distance matched by an ancestor, nothing below can beat row's minimum
+    private void visit(TrieNode node, int depth, int bestOnPath) {
+        if (++visitedNodes > maxVisitedNodes) return;
+        int[] row = rows[depth];
+        int distance = row[query.length()];
+        if (distance <= maxEdits) {
+            for (Suggestion suggestion : node.getTopSuggestions())
+                candidates.merge(suggestion.getSuggestion(), new Candidate(suggestion, distance),
+                        (c1, c2) -> c1.distance() <= c2.distance() ? c1 : c2);
+        }
+        int best = Math.min(bestOnPath, distance);
+        int reachable = min(row);
+        if (depth + 1 >= rows.length || reachable > maxEdits || reachable >= best) return;
+
+        node.forEachChild((c, child) -> {
+            if (visitedNodes > maxVisitedNodes) return;
+            fillNextRow(row, rows[depth + 1], c);
+            visit(child, depth + 1, best);
+        });
+    }
+
+    private void fillNextRow(int[] previous, int[] next, char c) {
+        next[0] = previous[0] + 1;
+        for (int j = 1; j < next.length; j++) {
+            int substitution = previous[j - 1] + (query.charAt(j - 1) == c ? 0 : 1);
+            next[j] = Math.min(substitution, Math.min(previous[j] + 1, next[j - 1] + 1));
+        }
+    }
+
+    private static int min(int[] row) {
+        int min = Integer.MAX_VALUE;
+        for (int value : row) min = Math.min(min, value);
+        return min;
+    }
+
+    private record Candidate(Suggestion suggestion, int distance) {
+    }
+}
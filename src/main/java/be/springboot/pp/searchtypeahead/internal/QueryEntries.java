@@ -0,0 +1,57 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+* (query, frequency) rows collected for the range based builders (CompactTrieBuilder, RadixTrieBuilder).
+*
+* Once sorted by query, every trie node maps to a contiguous range of entries,
+* which is all those builders need to lay a node out and pick its top-K.
+* */
+final class QueryEntries {
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void add(String query, long frequency) {
+        entries.add(new Entry(query, frequency));
+    }
+
+    // duplicate rows for the same query are merged by adding up their frequencies
+    Entry[] sortedUnique() {
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.sort(sorted, Comparator.comparing(Entry::query));
+        int size = 0;
+        for (Entry entry : sorted) {
+            if (size > 0 && sorted[size - 1].query().equals(entry.query()))
+                sorted[size - 1] = new Entry(entry.query(), sorted[size - 1].frequency() + entry.frequency());
+            else
+                sorted[size++] = entry;
+        }
+        return Arrays.copyOf(sorted, size);
+    }
+
+    // fills topBuffer with the indexes of the most frequent entries in [from, to), sorted by frequency desc
+    static int selectTopK(Entry[] sorted, int from, int to, int[] topBuffer) {
+        int k = topBuffer.length;
+        int size = 0;
+        if (k == 0) return 0;
+        for (int i = from; i < to; i++) {
+            long frequency = sorted[i].frequency();
+            if (size == k && sorted[topBuffer[size - 1]].frequency() >= frequency) continue;
+            // k is tiny so insertion beats a heap here
+            int pos = size == k ? k - 1 : size++;
+            while (pos > 0 && sorted[topBuffer[pos - 1]].frequency() < frequency) {
+                topBuffer[pos] = topBuffer[pos - 1];
+                pos--;
+            }
+            topBuffer[pos] = i;
+        }
+        return size;
+    }
+
+    record Entry(String query, long frequency) {
+    }
+}
@@ -0,0 +1,99 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+* Node of a path compressed (PATRICIA) trie. Chains of single-child nodes are collapsed into
+* the edge label, so a node only exists where the trie branches or a query ends, and only
+* those nodes keep a top-K list.
+*
+* The label is not copied, it is a [labelStart, labelEnd) window over one of the queries
+* below this node (all of them share that prefix anyway). Immutable once built.
+* */
+public final class RadixNode {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final RadixNode[] NO_CHILDREN = new RadixNode[0];
+
+    private final String labelSource;
+    private final int labelStart;
+    private final int labelEnd;
+    private final char[] firstChars; // sorted first char of every child's label
+    private final RadixNode[] children;
+    private final List<Suggestion> topSuggestions;
+
+    RadixNode(String labelSource, int labelStart, int labelEnd, List<RadixNode> children, List<Suggestion> topSuggestions) {
+        this.labelSource = labelSource;
+        this.labelStart = labelStart;
+        this.labelEnd = labelEnd;
+        this.topSuggestions = Collections.unmodifiableList(topSuggestions);
+        if (children.isEmpty()) {
+            this.firstChars = NO_KEYS;
+            this.children = NO_CHILDREN;
+        } else {
+            this.firstChars = new char[children.size()];
+            this.children = children.toArray(NO_CHILDREN);
+            for (int i = 0; i < this.children.length; i++)
+                firstChars[i] = this.children[i].labelSource.charAt(this.children[i].labelStart);
+        }
+    }
+
+    public int labelLength() {
+        return labelEnd - labelStart;
+    }
+
+    public char labelAt(int i) {
+        return labelSource.charAt(labelStart + i);
+    }
+
+    public RadixNode getChild(char c) {
+        int lo = 0;
+        int hi = firstChars.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (firstChars[mid] < c) lo = mid + 1;
+            else if (firstChars[mid] > c) hi = mid - 1;
+            else return children[mid];
+        }
+        return null;
+    }
+
+    public int getChildCount() {
+        return children.length;
+    }
+
+    public RadixNode getChildAt(int index) {
+        return children[index];
+    }
+
+    public List<Suggestion> getTopSuggestions() {
+        return topSuggestions;
+    }
+
+    /*
+    * Walks the query down the edges, a query ending in the middle of an edge resolves to
+    * the node at the end of that edge (same subtree, so same top-K).
+    * */
+    public static RadixNode find(RadixNode root, String query) {
+        RadixNode node = root;
+        int i = 0;
+        while (i < query.length()) {
+            node = node.getChild(query.charAt(i));
+            if (node == null) return null;
+            int length = node.labelLength();
+            for (int j = 0; j < length && i < query.length(); j++, i++)
+                if (node.labelAt(j) != query.charAt(i)) return null;
+        }
+        return node;
+    }
+
+    public static int countNodes(RadixNode node) {
+        int count = 1;
+        for (RadixNode child : node.children)
+            count += countNodes(child);
+        return count;
+    }
+}
@@ -0,0 +1,62 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+* Builds a RadixNode trie from sorted query ranges.
+*
+* For a node at depth d, the entries sharing the next char form one child range, and the
+* child's edge is the longest prefix common to the whole range (first vs last entry, the
+* range being sorted), capped at maxDepth. So single-child chains never become nodes.
+* */
+public class RadixTrieBuilder {
+
+    private final QueryEntries entries = new QueryEntries();
+
+    public RadixTrieBuilder add(String query, long frequency) {
+        entries.add(query, frequency);
+        return this;
+    }
+
+    public RadixNode build(int maxSuggestions, int maxDepth) {
+        QueryEntries.Entry[] sorted = entries.sortedUnique();
+        Suggestion[] suggestions = new Suggestion[sorted.length];
+        for (int i = 0; i < sorted.length; i++)
+            suggestions[i] = new Suggestion(sorted[i].query(), (int) sorted[i].frequency());
+        return buildNode(sorted, suggestions, 0, sorted.length, "", 0, 0, maxDepth, new int[maxSuggestions]);
+    }
+
+    private RadixNode buildNode(QueryEntries.Entry[] sorted, Suggestion[] suggestions, int from, int to,
+                                String labelSource, int labelStart, int depth, int maxDepth, int[] topBuffer) {
+        List<RadixNode> children = new ArrayList<>();
+        if (depth < maxDepth) {
+            int i = from;
+            while (i < to && sorted[i].query().length() <= depth) i++; // queries ending exactly at this node
+            while (i < to) {
+                char c = sorted[i].query().charAt(depth);
+                int j = i + 1;
+                while (j < to && sorted[j].query().charAt(depth) == c) j++;
+                String first = sorted[i].query();
+                int childDepth = Math.min(commonPrefixLength(first, sorted[j - 1].query()), maxDepth);
+                children.add(buildNode(sorted, suggestions, i, j, first, depth, childDepth, maxDepth, topBuffer));
+                i = j;
+            }
+        }
+
+        int found = QueryEntries.selectTopK(sorted, from, to, topBuffer);
+        List<Suggestion> top = new ArrayList<>(found);
+        for (int t = 0; t < found; t++)
+            top.add(suggestions[topBuffer[t]]);
+        return new RadixNode(labelSource, labelStart, depth, children, top);
+    }
+
+    private static int commonPrefixLength(String s1, String s2) {
+        int length = Math.min(s1.length(), s2.length());
+        int i = 0;
+        while (i < length && s1.charAt(i) == s2.charAt(i)) i++;
+        return i;
+    }
+}
@@ -0,0 +1,87 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/*
+* Builds the TrieNode trie as one shard per first char, every shard on its own ForkJoinPool task.
+*
+* The subtrees under the root's children never share a node, so each one is built by its own
+* TopKTrieBuilder without any coordination, and the only sequential step left is the root's
+* top-K, a K-way merge of the shards' lists. A lookup already routes to its shard through
+* root.getChild(query.charAt(0)), so nothing changes on the read path.
+*
+* add() only buckets the rows (on the caller's thread, which is the one paging the DB),
+* the trie work happens in build().
+* */
+public class ShardedTopKTrieBuilder {
+
+    private final int maxDepth;
+    private final Map<Character, List<Suggestion>> shards = new HashMap<>();
+    private final List<Suggestion> rootTerminals = new ArrayList<>(); // queries too short to have a shard
+
+    public ShardedTopKTrieBuilder(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public ShardedTopKTrieBuilder add(String query, long frequency) {
+        Suggestion suggestion = new Suggestion(query, (int) frequency);
+        if (query.isEmpty() || maxDepth == 0)
+            rootTerminals.add(suggestion);
+        else
+            shards.computeIfAbsent(query.charAt(0), c -> new ArrayList<>()).add(suggestion);
+        return this;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public TrieNode build(int maxSuggestions, Function<List<Suggestion>, byte[]> payloadRenderer, ForkJoinPool pool) {
+        Map<Character, ForkJoinTask<TrieNode>> tasks = new HashMap<>();
+        shards.forEach((c, entries) ->
+                tasks.put(c, pool.submit(() -> buildShard(c, entries, maxSuggestions, payloadRenderer))));
+
+        TopKTrieBuilder rootBuilder = new TopKTrieBuilder(maxDepth);
+        rootTerminals.forEach(rootBuilder::add);
+        TrieNode root = rootBuilder.build(maxSuggestions, payloadRenderer);
+        tasks.forEach((c, task) -> root.putChild(c, task.join()));
+        TopKTrieBuilder.computeTopSuggestions(root, maxSuggestions, payloadRenderer);
+        return root;
+    }
+
+    // the single shard for firstChar, an empty node if no row starts with it
+    public TrieNode buildShard(char firstChar, int maxSuggestions, Function<List<Suggestion>, byte[]> payloadRenderer) {
+        return buildShard(firstChar, shards.getOrDefault(firstChar, List.of()), maxSuggestions, payloadRenderer);
+    }
+
+    private TrieNode buildShard(char firstChar, List<Suggestion> entries, int maxSuggestions,
+                                Function<List<Suggestion>, byte[]> payloadRenderer) {
+        TopKTrieBuilder builder = new TopKTrieBuilder(maxDepth);
+        for (Suggestion suggestion : entries)
+            if (suggestion.getSuggestion().charAt(0) == firstChar)
+                builder.add(suggestion);
+        TrieNode shard = builder.build(maxSuggestions, payloadRenderer).getChild(firstChar);
+        if (shard == null) {
+            shard = new TrieNode();
+            TopKTrieBuilder.computeTopSuggestions(shard, maxSuggestions, payloadRenderer);
+        }
+        return shard;
+    }
+
+    // copy of root with one shard swapped, every other shard is shared with the given root
+    public static TrieNode replaceShard(TrieNode root, char firstChar, TrieNode shard, int maxSuggestions,
+                                        Function<List<Suggestion>, byte[]> payloadRenderer) {
+        TrieNode newRoot = new TrieNode(root);
+        newRoot.putChild(firstChar, shard);
+        TopKTrieBuilder.computeTopSuggestions(newRoot, maxSuggestions, payloadRenderer);
+        return newRoot;
+    }
+}
@@ -0,0 +1,126 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+* Space-Saving top-`capacity` list (Metwally et al.): at most `capacity` keys are tracked, when a new
+* key comes in while full it takes over the slot of the coldest one and inherits its count. Any key
+* hit more than hits / capacity times is guaranteed to be in the list.
+*
+* The hit of a tracked key is the hot path, it is lock-free: a ConcurrentHashMap lookup and a
+* LongAdder increment. Only admitting a key (and evicting one for it) and aging take the lock.
+*
+* Keys are grouped in buckets by count (a TreeMap instead of the linked stream-summary) to find the
+* coldest one, but the buckets only see the counts of the last time the lock looked at a key.
+* Eviction moves a key whose LongAdder got ahead to its real bucket and looks again, so the key
+* evicted is the coldest by its live count. A hit racing with the eviction of its key still counts
+* as a tracked hit, it just lands in an adder that was dropped.
+* */
+public class SpaceSavingHeavyHitters {
+
+    private final int capacity;
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>(); // live counts, membership
+    private final Map<String, Long> bucketedCounts = new HashMap<>(); // guarded by this
+    private final TreeMap<Long, Set<String>> buckets = new TreeMap<>(); // guarded by this
+
+    public SpaceSavingHeavyHitters(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        this.capacity = capacity;
+    }
+
+    // bumps key if it is tracked, false if it isn't (then nothing changes)
+    public boolean incrementIfPresent(String key) {
+        LongAdder count = counts.get(key);
+        if (count == null) return false;
+        count.increment();
+        return true;
+    }
+
+    /*
+    * Starts tracking key with count, evicting the coldest key if full. True only for the call that
+    * actually admitted key; if another thread got it in first this is just one more hit of a tracked key.
+    * */
+    public synchronized boolean offer(String key, long count) {
+        LongAdder current = counts.get(key);
+        if (current != null) {
+            current.increment();
+            return false;
+        }
+        if (counts.size() >= capacity) {
+            String evicted = coldest();
+            long evictedCount = bucketedCounts.remove(evicted);
+            unlink(evicted, evictedCount);
+            counts.remove(evicted);
+            count = Math.max(count, evictedCount + 1);
+        }
+        LongAdder adder = new LongAdder();
+        adder.add(count);
+        counts.put(key, adder);
+        link(key, count);
+        return true;
+    }
+
+    // ages every count along with the sketch, keys halved down to 0 are dropped
+    public synchronized void halve() {
+        bucketedCounts.clear();
+        buckets.clear();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet()) {
+            // hits landing between the reset and the add are kept, they just aren't halved
+            long halved = entry.getValue().sumThenReset() >>> 1;
+            if (halved == 0) {
+                counts.remove(entry.getKey());
+                continue;
+            }
+            entry.getValue().add(halved);
+            link(entry.getKey(), halved);
+        }
+    }
+
+    // hottest first, by live count
+    public List<Suggestion> top(int limit) {
+        List<Suggestion> all = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> all.add(new Suggestion(key, (int) Math.min(count.sum(), Integer.MAX_VALUE))));
+        all.sort((s1, s2) -> Integer.compare(s2.getFrequency(), s1.getFrequency()));
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    // the key with the lowest live count, catching buckets up with the lock-free hits on the way
+    private String coldest() {
+        while (true) {
+            Map.Entry<Long, Set<String>> coldest = buckets.firstEntry();
+            String key = coldest.getValue().iterator().next();
+            long live = counts.get(key).sum();
+            if (live <= coldest.getKey())
+                return key;
+            unlink(key, coldest.getKey());
+            link(key, live);
+        }
+    }
+
+    private void link(String key, long count) {
+        bucketedCounts.put(key, count);
+        buckets.computeIfAbsent(count, c -> new LinkedHashSet<>()).add(key);
+    }
+
+    private void unlink(String key, long count) {
+        Set<String> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty())
+            buckets.remove(count);
+    }
+}
@@ -0,0 +1,139 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/*
+* Two phase builder for the TrieNode trie.
+*
+* 1. add() only walks/creates the path of a query and drops it in the terminal list of its last node.
+* 2. build() does a single post-order pass, every node's top-K is a bounded K-way merge of
+*    its own (sorted) terminal list and its children's already computed (sorted) top-K lists.
+*
+* So every node's top-K is computed exactly once, instead of re-collecting and re-sorting
+* all the children at every depth for every inserted query.
+* */
+public class TopKTrieBuilder {
+
+    private static final Comparator<Suggestion> BY_FREQUENCY_DESC =
+            (s1, s2) -> Integer.compare(s2.getFrequency(), s1.getFrequency());
+
+    private final TrieNode root = new TrieNode();
+    private final int maxDepth;
+
+    public TopKTrieBuilder(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public TopKTrieBuilder add(String query, long frequency) {
+        return add(new Suggestion(query, (int) frequency));
+    }
+
+    public TopKTrieBuilder add(Suggestion suggestion) {
+        String query = suggestion.getSuggestion();
+        TrieNode cur = root;
+        int depth = Math.min(query.length(), maxDepth);
+        for (int i = 0; i < depth; i++) {
+            char c = query.charAt(i);
+            TrieNode next = cur.getChild(c);
+            if (next == null) {
+                next = new TrieNode();
+                cur.putChild(c, next);
+            }
+            cur = next;
+        }
+        if (depth == query.length())
+            cur.setEOW(true);
+        cur.getTerminalSuggestions().add(suggestion);
+        return this;
+    }
+
+    public TrieNode build(int maxSuggestions) {
+        return build(maxSuggestions, null);
+    }
+
+    // payloadRenderer (nullable) pre-renders every node's top-K, e.g. into the JSON response body
+    public TrieNode build(int maxSuggestions, Function<List<Suggestion>, byte[]> payloadRenderer) {
+        computeSubtree(root, maxSuggestions, payloadRenderer);
+        return root;
+    }
+
+    private static void computeSubtree(TrieNode node, int maxSuggestions, Function<List<Suggestion>, byte[]> payloadRenderer) {
+        mergeDuplicateTerminals(node);
+        node.forEachChild((c, child) -> computeSubtree(child, maxSuggestions, payloadRenderer));
+        computeTopSuggestions(node, maxSuggestions, payloadRenderer);
+    }
+
+    // expects the children's top-K to be up-to-date already
+    public static void computeTopSuggestions(TrieNode node, int maxSuggestions, Function<List<Suggestion>, byte[]> payloadRenderer) {
+        if (node.getChildCount() == 1 && node.getTerminalSuggestions().isEmpty()) {
+            // a pass-through node has exactly its child's top-K, share the list and the payload
+            node.forEachChild((c, onlyChild) -> {
+                node.setTopSuggestions(onlyChild.getTopSuggestions());
+                node.setPayload(onlyChild.getPayload());
+            });
+            return;
+        }
+
+        node.getTerminalSuggestions().sort(BY_FREQUENCY_DESC);
+        List<List<Suggestion>> sortedLists = new ArrayList<>(node.getChildCount() + 1);
+        sortedLists.add(node.getTerminalSuggestions());
+        node.forEachChild((c, child) -> sortedLists.add(child.getTopSuggestions()));
+        node.setTopSuggestions(mergeTopK(sortedLists, maxSuggestions));
+        node.setPayload(payloadRenderer == null ? null : payloadRenderer.apply(node.getTopSuggestions()));
+    }
+
+    // every list has to be sorted by frequency desc, stops after k pops
+    public static List<Suggestion> mergeTopK(List<List<Suggestion>> sortedLists, int k) {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                (c1, c2) -> BY_FREQUENCY_DESC.compare(c1.head(), c2.head()));
+        for (List<Suggestion> list : sortedLists)
+            if (!list.isEmpty())
+                heads.add(new Cursor(list));
+
+        List<Suggestion> top = new ArrayList<>(k);
+        while (top.size() < k && !heads.isEmpty()) {
+            Cursor cursor = heads.poll();
+            top.add(cursor.head());
+            if (cursor.advance())
+                heads.add(cursor);
+        }
+        return top;
+    }
+
+    // the same query coming from more than one row is counted once, with the frequencies added up
+    private static void mergeDuplicateTerminals(TrieNode node) {
+        List<Suggestion> terminals = node.getTerminalSuggestions();
+        if (terminals.size() < 2) return;
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (Suggestion suggestion : terminals)
+            frequencies.merge(suggestion.getSuggestion(), suggestion.getFrequency(), Integer::sum);
+        if (frequencies.size() == terminals.size()) return;
+        terminals.clear();
+        frequencies.forEach((query, frequency) -> terminals.add(new Suggestion(query, frequency)));
+    }
+
+    private static final class Cursor {
+        private final List<Suggestion> list;
+        private int position;
+
+        private Cursor(List<Suggestion> list) {
+            this.list = list;
+        }
+
+        private Suggestion head() {
+            return list.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < list.size();
+        }
+    }
+}
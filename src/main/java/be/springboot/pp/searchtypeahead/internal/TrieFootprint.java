@@ -0,0 +1,38 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+
+/*
+* Node count and a rough heap estimate of a TrieNode trie, walked once per full reload for the metrics.
+*
+* The byte count is an estimate with compressed oops in mind (~64 bytes of node + one empty terminal
+* list, 6 bytes per child slot, and lists / payloads only where they are not shared with the single
+* child), good enough to watch the trend, not to size the heap.
+* */
+public record TrieFootprint(long nodeCount, long estimatedSizeBytes) {
+
+    private static final long NODE_BYTES = 64;
+    private static final long CHILD_SLOT_BYTES = 6;
+    private static final long LIST_BYTES = 40;
+    private static final long SUGGESTION_BYTES = 64; // Suggestion + String + its byte[] header
+
+    public static TrieFootprint of(TrieNode root) {
+        long[] totals = new long[2];
+        walk(root, totals);
+        return new TrieFootprint(totals[0], totals[1]);
+    }
+
+    private static void walk(TrieNode node, long[] totals) {
+        totals[0]++;
+        long bytes = NODE_BYTES + CHILD_SLOT_BYTES * node.getChildCount();
+        for (Suggestion suggestion : node.getTerminalSuggestions())
+            bytes += SUGGESTION_BYTES + suggestion.getSuggestion().length();
+        boolean sharesChildLists = node.getChildCount() == 1 && node.getTerminalSuggestions().isEmpty();
+        if (!sharesChildLists) {
+            bytes += LIST_BYTES + 4L * node.getTopSuggestions().size();
+            if (node.getPayload() != null) bytes += 16 + node.getPayload().length;
+        }
+        totals[1] += bytes;
+        node.forEachChild((c, child) -> walk(child, totals));
+    }
+}
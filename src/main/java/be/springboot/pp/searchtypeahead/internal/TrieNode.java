@@ -5,19 +5,148 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
-@Getter
-@Setter
+/*
+* Children are keyed by char (any UTF-16 unit, so any script, digits, spaces...) and the
+* storage grows with the fan-out, the way an adaptive radix tree does it:
+*
+* - leaves (most of the nodes) don't allocate anything for children
+* - up to 4 children: sorted arrays, linear scan
+* - up to 48 children: sorted arrays, binary search
+* - above that: a direct 256 slot table for Latin-1 chars, everything else stays in the sorted arrays
+*
+* so a node pays for the children it has instead of 26 slots whether it uses them or not.
+* */
 public class TrieNode {
+
+    private static final int LINEAR_SCAN_LIMIT = 4;
+    private static final int SORTED_ARRAY_LIMIT = 48;
+    private static final int DIRECT_TABLE_SIZE = 256;
+
+    @Getter
+    @Setter
     private boolean isEOW; // is the end of search query (which was done by other users) reached?
-    private final List<TrieNode> pointers;
+    @Getter
+    @Setter
     private List<Suggestion> topSuggestions;
+    @Getter
+    private final List<Suggestion> terminalSuggestions; // queries ending (or truncated) at this node
+    @Getter
+    @Setter
+    private byte[] payload; // topSuggestions already rendered as JSON, set once when the trie is built
+
+    private char[] keys; // sorted, parallel to children
+    private TrieNode[] children;
+    private int sortedCount; // children living in keys/children
+    private TrieNode[] directChildren; // chars < 256 once the node outgrows the sorted arrays
+    private int directCount;
 
     public TrieNode() {
         this.isEOW = false;
-        pointers = new ArrayList<>(Collections.nCopies(26, null));
         topSuggestions = new ArrayList<>();
+        terminalSuggestions = new ArrayList<>();
+    }
+
+    // shallow copy used for copy-on-write patching, children are shared until they are copied too
+    public TrieNode(TrieNode other) {
+        this.isEOW = other.isEOW;
+        this.topSuggestions = other.topSuggestions;
+        this.terminalSuggestions = new ArrayList<>(other.terminalSuggestions);
+        this.payload = other.payload;
+        this.keys = other.keys == null ? null : other.keys.clone();
+        this.children = other.children == null ? null : other.children.clone();
+        this.sortedCount = other.sortedCount;
+        this.directChildren = other.directChildren == null ? null : other.directChildren.clone();
+        this.directCount = other.directCount;
+    }
+
+    public int getChildCount() {
+        return sortedCount + directCount;
+    }
+
+    public TrieNode getChild(char c) {
+        if (directChildren != null && c < DIRECT_TABLE_SIZE) return directChildren[c];
+        int index = indexOf(c);
+        return index >= 0 ? children[index] : null;
+    }
+
+    // adds the child, or replaces the one already present for c
+    public void putChild(char c, TrieNode child) {
+        if (directChildren != null && c < DIRECT_TABLE_SIZE) {
+            if (directChildren[c] == null) directCount++;
+            directChildren[c] = child;
+            return;
+        }
+        int index = indexOf(c);
+        if (index >= 0) {
+            children[index] = child;
+            return;
+        }
+        if (directChildren == null && sortedCount == SORTED_ARRAY_LIMIT) {
+            growToDirectTable();
+            putChild(c, child);
+            return;
+        }
+        insertSorted(-(index + 1), c, child);
+    }
+
+    public void forEachChild(ChildVisitor visitor) {
+        if (directChildren != null) {
+            for (int c = 0; c < DIRECT_TABLE_SIZE; c++)
+                if (directChildren[c] != null)
+                    visitor.visit((char) c, directChildren[c]);
+        }
+        for (int i = 0; i < sortedCount; i++)
+            visitor.visit(keys[i], children[i]);
+    }
+
+    // returns the index of c, or -(insertion point + 1) like Arrays.binarySearch
+    private int indexOf(char c) {
+        if (sortedCount <= LINEAR_SCAN_LIMIT) {
+            int i = 0;
+            while (i < sortedCount && keys[i] < c) i++;
+            return i < sortedCount && keys[i] == c ? i : -(i + 1);
+        }
+        return Arrays.binarySearch(keys, 0, sortedCount, c);
+    }
+
+    private void insertSorted(int position, char c, TrieNode child) {
+        if (keys == null) {
+            keys = new char[LINEAR_SCAN_LIMIT];
+            children = new TrieNode[LINEAR_SCAN_LIMIT];
+        } else if (sortedCount == keys.length) {
+            int capacity = keys.length < 16 ? 16 : keys.length < SORTED_ARRAY_LIMIT ? SORTED_ARRAY_LIMIT : keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            children = Arrays.copyOf(children, capacity);
+        }
+        System.arraycopy(keys, position, keys, position + 1, sortedCount - position);
+        System.arraycopy(children, position, children, position + 1, sortedCount - position);
+        keys[position] = c;
+        children[position] = child;
+        sortedCount++;
+    }
+
+    private void growToDirectTable() {
+        directChildren = new TrieNode[DIRECT_TABLE_SIZE];
+        int remaining = 0;
+        for (int i = 0; i < sortedCount; i++) {
+            if (keys[i] < DIRECT_TABLE_SIZE) {
+                directChildren[keys[i]] = children[i];
+                directCount++;
+            } else {
+                keys[remaining] = keys[i];
+                children[remaining] = children[i];
+                remaining++;
+            }
+        }
+        Arrays.fill(children, remaining, sortedCount, null);
+        sortedCount = remaining;
+    }
+
+    @FunctionalInterface
+    public interface ChildVisitor {
+        void visit(char c, TrieNode child);
     }
 }
@@ -0,0 +1,14 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+/*
+* An immutable, fully built trie along with the generation it was published as.
+*
+* Readers grab the snapshot once per request and only ever see a complete trie,
+* writers build a new one privately and publish it with a single reference swap.
+* */
+public record TrieSnapshot<T>(T trie, long generation, long builtAtMillis) {
+
+    public TrieSnapshot<T> next(T newTrie) {
+        return new TrieSnapshot<>(newTrie, generation + 1, System.currentTimeMillis());
+    }
+}
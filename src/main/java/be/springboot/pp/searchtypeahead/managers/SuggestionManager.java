@@ -1,15 +1,22 @@
 package be.springboot.pp.searchtypeahead.managers;
 
 import be.springboot.pp.searchtypeahead.constants.SuggestionConstants;
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
 import be.springboot.pp.searchtypeahead.dtos.Suggestion;
-import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionBatchResponse;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionCacheStats;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionResponse;
 import be.springboot.pp.searchtypeahead.interfaces.SuggestionCache;
-import be.springboot.pp.searchtypeahead.repositories.QueryFrequencyRepository;
+import be.springboot.pp.searchtypeahead.metrics.TypeaheadMetrics;
+import be.springboot.pp.searchtypeahead.workers.HotQueryTracker;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @Component
@@ -17,13 +24,17 @@ public class SuggestionManager {
 
     private final SuggestionCache suggestionCache;
 
-    private final QueryFrequencyRepository queryFrequencyRepository;
+    private final HotQueryTracker hotQueryTracker;
+
+    private final TypeaheadMetrics typeaheadMetrics;
 
     @Autowired
     public SuggestionManager(SuggestionCache suggestionCache,
-                             QueryFrequencyRepository queryFrequencyRepository) {
+                             HotQueryTracker hotQueryTracker,
+                             TypeaheadMetrics typeaheadMetrics) {
         this.suggestionCache = suggestionCache;
-        this.queryFrequencyRepository = queryFrequencyRepository;
+        this.hotQueryTracker = hotQueryTracker;
+        this.typeaheadMetrics = typeaheadMetrics;
     }
 
     public List<Suggestion> getTopSuggestion(String query) {
@@ -36,14 +47,80 @@ public class SuggestionManager {
         return suggestions;
     }
 
-    public synchronized void updateQueryFrequency(String query) {
-        log.info("Updating query frequency for query: {}", query);
-        QueryFrequency queryFrequency = queryFrequencyRepository.findByQuery(query);
-        if (queryFrequency == null) {
-            queryFrequency = new QueryFrequency(query, 1L);
-        } else {
-            queryFrequency.setFrequency(queryFrequency.getFrequency() + 1);
+    // maxEdits > 0 opts into the typo tolerant lookup
+    public SuggestionResponse getTopSuggestionResponse(String query, int maxEdits) {
+        return getTopSuggestionResponse(query, maxEdits, SuggestionRanking.LIFETIME);
+    }
+
+    public SuggestionResponse getTopSuggestionResponse(String query, int maxEdits, SuggestionRanking ranking) {
+        if (query.length() > SuggestionConstants.MAX_ALLOWED_SUGGESTIONS)
+            throw new RuntimeException("Query length should not exceed " + SuggestionConstants.MAX_ALLOWED_SUGGESTIONS);
+
+        long start = System.nanoTime();
+        SuggestionResponse response = suggestionCache.getCachedResponse(query, Math.min(Math.max(maxEdits, 0), SuggestionConstants.MAX_FUZZY_EDITS), ranking);
+        // "[]" is the only body that short
+        typeaheadMetrics.recordSuggestion(ranking, System.nanoTime() - start,
+                response.body().length == SuggestionConstants.EMPTY_SUGGESTIONS_PAYLOAD.length);
+        return response;
+    }
+
+    /*
+    * Top-K for many prefixes at once. Only the prefixes that no other requested prefix extends are
+    * walked, the shorter ones are answered by the nodes met on the way, so "m", "mo", "mob" cost one walk.
+    * */
+    public SuggestionBatchResponse getTopSuggestionsBatch(List<String> prefixes, SuggestionRanking ranking) {
+        long start = System.nanoTime();
+        Map<String, List<Suggestion>> suggestions = new LinkedHashMap<>();
+        for (String prefix : prefixes) {
+            if (prefix.length() > SuggestionConstants.MAX_QUERY_SIZE)
+                throw new RuntimeException("Prefix length should not exceed " + SuggestionConstants.MAX_QUERY_SIZE);
+            suggestions.put(prefix, null);
         }
-        queryFrequencyRepository.save(queryFrequency);
+
+        List<String> sorted = new ArrayList<>(suggestions.keySet());
+        sorted.sort(null);
+        long generation;
+        // every walk reads the published snapshot on its own, so they are redone if a new generation
+        // was published in between: the response then holds one snapshot, the one its generation names
+        do {
+            generation = suggestionCache.getGeneration(ranking);
+            for (int i = 0; i < sorted.size(); i++) {
+                String word = sorted.get(i);
+                // an extension of word, if requested, sorts right after it
+                if (i + 1 < sorted.size() && sorted.get(i + 1).startsWith(word)) continue;
+                List<List<Suggestion>> alongPath = suggestionCache.getSuggestionsAlongPath(word, ranking);
+                for (int length = 1; length <= word.length(); length++) {
+                    String prefix = word.substring(0, length);
+                    if (suggestions.containsKey(prefix))
+                        suggestions.put(prefix, alongPath.get(length - 1));
+                }
+            }
+        } while (generation != suggestionCache.getGeneration(ranking));
+        log.info("Returning batch suggestions for {} prefixes", suggestions.size());
+        typeaheadMetrics.recordBatch(System.nanoTime() - start);
+        return new SuggestionBatchResponse(generation, suggestions);
+    }
+
+    public boolean isRankingSupported(SuggestionRanking ranking) {
+        return suggestionCache.isRankingSupported(ranking);
+    }
+
+    public SuggestionCacheStats getCacheStats() {
+        return suggestionCache.getStats();
+    }
+
+    public long getTrieGeneration() {
+        return suggestionCache.getGeneration();
+    }
+
+    // only counted in memory here, HotQueryTracker lets the queries hot enough through to QueryFrequencyFlushWorker,
+    // which writes the batched deltas to the DB
+    public void updateQueryFrequency(String query) {
+        log.info("Updating query frequency for query: {}", query);
+        hotQueryTracker.record(query);
+    }
+
+    public List<Suggestion> getHotQueries(int limit) {
+        return hotQueryTracker.getHotQueries(limit);
     }
 }
@@ -0,0 +1,86 @@
+package be.springboot.pp.searchtypeahead.metrics;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
+import be.springboot.pp.searchtypeahead.dtos.SuggestionStructureStats;
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import be.springboot.pp.searchtypeahead.managers.SuggestionManager;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+* GET /actuator/typeahead, everything about the type-ahead on one page: one entry per trie
+* (size, generation, last reload, staleness), the response cache, the latency percentiles
+* and the hottest queries seen by HotQueryTracker.
+* The same numbers are exported as meters by TypeaheadMetrics for dashboards and alerts.
+* */
+@Component
+@Endpoint(id = "typeahead")
+public class TypeaheadEndpoint {
+
+    private static final int HOT_QUERIES_SHOWN = 20;
+
+    private final List<SuggestionDataStructure> suggestionDataStructures;
+    private final SuggestionManager suggestionManager;
+    private final TypeaheadMetrics typeaheadMetrics;
+
+    @Autowired
+    public TypeaheadEndpoint(List<SuggestionDataStructure> suggestionDataStructures,
+                             SuggestionManager suggestionManager,
+                             TypeaheadMetrics typeaheadMetrics) {
+        this.suggestionDataStructures = suggestionDataStructures;
+        this.suggestionManager = suggestionManager;
+        this.typeaheadMetrics = typeaheadMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> typeahead() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> structures = new ArrayList<>();
+        for (SuggestionDataStructure structure : suggestionDataStructures) {
+            SuggestionStructureStats stats = structure.getStats();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("stats", stats);
+            entry.put("stalenessMillis", now - stats.getBuiltAtMillis());
+            structures.add(entry);
+        }
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        for (SuggestionRanking ranking : SuggestionRanking.values())
+            latency.put(ranking.name().toLowerCase(), percentiles(typeaheadMetrics.getSuggestionLatency(ranking)));
+        latency.put("batch", percentiles(typeaheadMetrics.getBatchLatency()));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("structures", structures);
+        body.put("cache", suggestionManager.getCacheStats());
+        body.put("latencyMillis", latency);
+        body.put("hotQueries", suggestionManager.getHotQueries(HOT_QUERIES_SHOWN));
+        return body;
+    }
+
+    private static Map<String, Object> percentiles(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", snapshot.count());
+        values.put("max", snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues())
+            values.put("p" + percentileLabel(percentile.percentile()), percentile.value(TimeUnit.MILLISECONDS));
+        return values;
+    }
+
+    // 0.5 -> "50", 0.999 -> "99.9"
+    private static String percentileLabel(double percentile) {
+        double percent = percentile * 100;
+        return percent == Math.rint(percent) ? String.valueOf((long) percent) : String.valueOf(Math.round(percent * 10) / 10.0);
+    }
+}
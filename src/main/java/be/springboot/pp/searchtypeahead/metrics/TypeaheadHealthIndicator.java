@@ -0,0 +1,36 @@
+package be.springboot.pp.searchtypeahead.metrics;
+
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/*
+* `typeahead` health contributor: OUT_OF_SERVICE while a trie is still doing its first build in the
+* background (it answers from an empty trie meanwhile), UP once every one of them is ready.
+* It is part of the readiness group, so traffic only comes in once the suggestions are real.
+* */
+@Component
+public class TypeaheadHealthIndicator implements HealthIndicator {
+
+    private final List<SuggestionDataStructure> suggestionDataStructures;
+
+    @Autowired
+    public TypeaheadHealthIndicator(List<SuggestionDataStructure> suggestionDataStructures) {
+        this.suggestionDataStructures = suggestionDataStructures;
+    }
+
+    @Override
+    public Health health() {
+        boolean ready = true;
+        Health.Builder builder = Health.unknown();
+        for (SuggestionDataStructure structure : suggestionDataStructures) {
+            ready &= structure.isReady();
+            builder.withDetail(structure.getRanking().name().toLowerCase(), structure.isReady() ? "ready" : "building");
+        }
+        return (ready ? builder.up() : builder.outOfService()).build();
+    }
+}
@@ -0,0 +1,174 @@
+package be.springboot.pp.searchtypeahead.metrics;
+
+import be.springboot.pp.searchtypeahead.constants.SuggestionRanking;
+import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import be.springboot.pp.searchtypeahead.internal.AdaptiveConcurrencyLimiter;
+import be.springboot.pp.searchtypeahead.workers.HotQueryTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Every meter of the type-ahead, registered once up front so the request path only does
+* a System.nanoTime() pair, an EnumMap lookup and a Timer.record (lock free, HDR style buckets).
+*
+*   typeahead.suggestion.latency{ranking}    /search/suggestion, with p50/p95/p99/p999 and a percentile histogram
+*   typeahead.suggestion.batch.latency       /search/suggestions:batch
+*   typeahead.suggestion.empty{ranking}      lookups that found nothing to suggest
+*   typeahead.trie.*{ranking}                nodes, estimated size, generation, last reload duration, staleness
+*   typeahead.sync.*                         DbToCacheSyncWorker cycles, rows applied, failures
+*   typeahead.hot.*                          HotQueryTracker hits admitted / held back, hot queries tracked
+*   typeahead.admission.*                    SearchAdmissionFilter limit, requests in flight, shed requests{kind}
+*   cache.*{cache=typeahead.responses}       response cache hits / misses / evictions (bound in TopKSuggestionCache)
+* */
+@Component
+public class TypeaheadMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99, 0.999};
+
+    private final Map<SuggestionRanking, Timer> suggestionLatency = new EnumMap<>(SuggestionRanking.class);
+    private final Map<SuggestionRanking, Counter> emptySuggestions = new EnumMap<>(SuggestionRanking.class);
+    private final Timer batchLatency;
+    private final Timer syncDuration;
+    private final Counter syncRows;
+    private final Counter syncFailures;
+    private final Counter shedReads;
+    private final Counter shedWrites;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public TypeaheadMetrics(MeterRegistry meterRegistry, List<SuggestionDataStructure> suggestionDataStructures,
+                            HotQueryTracker hotQueryTracker) {
+        this.meterRegistry = meterRegistry;
+        for (SuggestionRanking ranking : SuggestionRanking.values()) {
+            String tag = tagOf(ranking);
+            suggestionLatency.put(ranking, Timer.builder("typeahead.suggestion.latency")
+                    .description("Time to answer /search/suggestion")
+                    .tag("ranking", tag)
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            emptySuggestions.put(ranking, Counter.builder("typeahead.suggestion.empty")
+                    .description("Suggestion lookups that returned no suggestion")
+                    .tag("ranking", tag)
+                    .register(meterRegistry));
+        }
+        batchLatency = Timer.builder("typeahead.suggestion.batch.latency")
+                .description("Time to answer /search/suggestions:batch")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        syncDuration = Timer.builder("typeahead.sync.duration")
+                .description("Duration of a DB to trie sync cycle")
+                .register(meterRegistry);
+        syncRows = Counter.builder("typeahead.sync.rows")
+                .description("Changed rows applied to the tries")
+                .register(meterRegistry);
+        syncFailures = Counter.builder("typeahead.sync.failures")
+                .description("Sync cycles that threw")
+                .register(meterRegistry);
+        shedReads = Counter.builder("typeahead.admission.shed")
+                .description("Requests turned away with a 429")
+                .tag("kind", "read")
+                .register(meterRegistry);
+        shedWrites = Counter.builder("typeahead.admission.shed")
+                .description("Requests turned away with a 429")
+                .tag("kind", "write")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("typeahead.hot.hits", hotQueryTracker, HotQueryTracker::getAdmittedHits)
+                .description("Query hits passed on to be persisted")
+                .tag("outcome", "admitted")
+                .register(meterRegistry);
+        FunctionCounter.builder("typeahead.hot.hits", hotQueryTracker, HotQueryTracker::getHeldBackHits)
+                .description("Query hits only counted in the sketch, below the admission threshold")
+                .tag("outcome", "held-back")
+                .register(meterRegistry);
+        Gauge.builder("typeahead.hot.tracked", hotQueryTracker, HotQueryTracker::getTrackedQueries)
+                .description("Queries in the heavy hitters list")
+                .register(meterRegistry);
+
+        for (SuggestionDataStructure structure : suggestionDataStructures)
+            registerTrieGauges(meterRegistry, structure);
+    }
+
+    public void recordSuggestion(SuggestionRanking ranking, long elapsedNanos, boolean empty) {
+        suggestionLatency.get(ranking).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if (empty)
+            emptySuggestions.get(ranking).increment();
+    }
+
+    public void recordBatch(long elapsedNanos) {
+        batchLatency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSync(long elapsedNanos, int rows, boolean failed) {
+        syncDuration.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        syncRows.increment(rows);
+        if (failed)
+            syncFailures.increment();
+    }
+
+    public void recordShed(boolean write) {
+        (write ? shedWrites : shedReads).increment();
+    }
+
+    public void bindAdmissionLimiter(AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("typeahead.admission.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current concurrency limit of /search/**")
+                .register(meterRegistry);
+        Gauge.builder("typeahead.admission.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Requests of /search/** being served")
+                .register(meterRegistry);
+    }
+
+    public Timer getSuggestionLatency(SuggestionRanking ranking) {
+        return suggestionLatency.get(ranking);
+    }
+
+    public Timer getBatchLatency() {
+        return batchLatency;
+    }
+
+    // gauges are only read on scrape, getStats() is a couple of volatile reads
+    private void registerTrieGauges(MeterRegistry meterRegistry, SuggestionDataStructure structure) {
+        String tag = tagOf(structure.getRanking());
+        Gauge.builder("typeahead.trie.nodes", structure, s -> s.getStats().getNodeCount())
+                .description("Nodes in the published trie")
+                .tag("ranking", tag)
+                .register(meterRegistry);
+        Gauge.builder("typeahead.trie.size", structure, s -> s.getStats().getEstimatedSizeBytes())
+                .description("Estimated memory taken by the published trie")
+                .baseUnit("bytes")
+                .tag("ranking", tag)
+                .register(meterRegistry);
+        Gauge.builder("typeahead.trie.generation", structure, s -> s.getStats().getGeneration())
+                .description("Generation of the published trie, bumped on every reload or delta")
+                .tag("ranking", tag)
+                .register(meterRegistry);
+        TimeGauge.builder("typeahead.trie.reload.duration", structure, TimeUnit.MILLISECONDS,
+                        s -> s.getStats().getLastReloadDurationMillis())
+                .description("Duration of the last full reload")
+                .tag("ranking", tag)
+                .register(meterRegistry);
+        TimeGauge.builder("typeahead.trie.staleness", structure, TimeUnit.MILLISECONDS,
+                        s -> System.currentTimeMillis() - s.getStats().getBuiltAtMillis())
+                .description("Time since the published trie was built")
+                .tag("ranking", tag)
+                .register(meterRegistry);
+    }
+
+    private static String tagOf(SuggestionRanking ranking) {
+        return ranking.name().toLowerCase();
+    }
+}
@@ -0,0 +1,57 @@
+package be.springboot.pp.searchtypeahead.repositories;
+
+import be.springboot.pp.searchtypeahead.interfaces.impl.TrendingDecayScorer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+* Applies aggregated frequency deltas to query_frequency in one JDBC batch of upserts:
+* a query without a row is inserted with its hits, one with a row gets `frequency = frequency + hits`.
+* The same statement adds the hits to the decayed trending_score, so trending costs no extra round trip.
+*
+* The upsert relies on the unique index on `query` (see QueryFrequency), so two replicas flushing
+* the same new query at once end up with one row holding both deltas instead of two rows.
+* Rows are written in query order, so concurrent batches lock their rows in the same order.
+*
+* Kept on plain JDBC because going through JPA would mean a select + save per query,
+* which is exactly the round trip per hit we are trying to get rid of.
+* */
+@Repository
+public class QueryFrequencyBatchWriter {
+
+    // trending_score is a log2 sum, log2(2^a + 2^b) = max(a, b) + log2(1 + 2^-|a - b|) adds a hit without leaving the log domain
+    private static final String UPSERT_SQL =
+            "INSERT INTO query_frequency (`query`, frequency, trending_score, created_at, updated_at) VALUES (?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE frequency = frequency + VALUES(frequency), " +
+                    "trending_score = CASE WHEN trending_score IS NULL THEN VALUES(trending_score) " +
+                    "ELSE GREATEST(trending_score, VALUES(trending_score)) + LOG2(1 + POW(2, -ABS(trending_score - VALUES(trending_score)))) END, " +
+                    "updated_at = VALUES(updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TrendingDecayScorer trendingDecayScorer;
+
+    @Autowired
+    public QueryFrequencyBatchWriter(JdbcTemplate jdbcTemplate, TrendingDecayScorer trendingDecayScorer) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.trendingDecayScorer = trendingDecayScorer;
+    }
+
+    @Transactional
+    public void incrementAll(Map<String, Long> deltas) {
+        List<Object[]> upserts = new ArrayList<>(deltas.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (Map.Entry<String, Long> entry : new TreeMap<>(deltas).entrySet()) {
+            double trendingIncrement = trendingDecayScorer.logIncrement(entry.getValue(), now.getTime());
+            upserts.add(new Object[]{entry.getKey(), entry.getValue(), trendingIncrement, now, now});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+    }
+}
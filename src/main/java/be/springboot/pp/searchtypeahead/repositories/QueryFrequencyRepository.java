@@ -1,10 +1,53 @@
 package be.springboot.pp.searchtypeahead.repositories;
 
 import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
 @Repository
 public interface QueryFrequencyRepository extends JpaRepository<QueryFrequency, Long> {
     QueryFrequency findByQuery(String query);
+
+    List<QueryFrequency> findByUpdatedAtGreaterThanEqualOrderByUpdatedAtAsc(Date updatedAt);
+
+    @Query("select max(q.updatedAt) from QueryFrequency q")
+    Date findMaxUpdatedAt();
+
+    List<QueryFrequency> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<QueryFrequency> findByQueryStartingWithAndIdGreaterThanOrderByIdAsc(String prefix, Long id, Limit limit);
+
+    /*
+    * Walks the whole table in id order, one page at a time (keyset pagination, so late pages
+    * cost as much as early ones). Each page comes from its own repository call and is detached
+    * afterwards, so only one page of entities is alive at any point, as long as the caller
+    * is not running inside a transaction of its own.
+    * */
+    default void forEachPage(int pageSize, Consumer<List<QueryFrequency>> consumer) {
+        forEachPage(pageSize, consumer, (lastId, limit) -> findByIdGreaterThanOrderByIdAsc(lastId, limit));
+    }
+
+    // same walk restricted to the queries starting with prefix, e.g. to rebuild one shard of the trie
+    default void forEachPage(String prefix, int pageSize, Consumer<List<QueryFrequency>> consumer) {
+        forEachPage(pageSize, consumer, (lastId, limit) -> findByQueryStartingWithAndIdGreaterThanOrderByIdAsc(prefix, lastId, limit));
+    }
+
+    private void forEachPage(int pageSize, Consumer<List<QueryFrequency>> consumer,
+                             BiFunction<Long, Limit, List<QueryFrequency>> fetchPage) {
+        long lastId = 0;
+        while (true) {
+            List<QueryFrequency> page = fetchPage.apply(lastId, Limit.of(pageSize));
+            if (page.isEmpty()) return;
+            consumer.accept(page);
+            if (page.size() < pageSize) return;
+            lastId = page.get(page.size() - 1).getId();
+        }
+    }
 }
@@ -14,4 +14,26 @@ public class SuggestionUtils {
         }
         return true;
     }
+
+    /*
+    * Lowercase or caseless letters of any script (é, ß, я, 日...), digits and spaces.
+    * Uppercase is still rejected, queries are expected to be lowercased by the client.
+    * */
+    public static boolean isValidQuery(String query) {
+        if (query == null || query.isBlank()) {
+            return false;
+        }
+
+        for (int i = 0; i < query.length(); ) {
+            int codePoint = query.codePointAt(i);
+            boolean allowed = codePoint == ' '
+                    || Character.isDigit(codePoint)
+                    || (Character.isLetter(codePoint) && !Character.isUpperCase(codePoint) && !Character.isTitleCase(codePoint));
+            if (!allowed) {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
 }
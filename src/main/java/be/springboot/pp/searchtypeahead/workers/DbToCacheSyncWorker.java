@@ -1,33 +1,256 @@
 package be.springboot.pp.searchtypeahead.workers;
 
+import be.springboot.pp.searchtypeahead.dtos.SyncStatus;
+import be.springboot.pp.searchtypeahead.entities.QueryFrequency;
 import be.springboot.pp.searchtypeahead.interfaces.SuggestionDataStructure;
+import be.springboot.pp.searchtypeahead.metrics.TypeaheadMetrics;
+import be.springboot.pp.searchtypeahead.repositories.QueryFrequencyRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Keeps the trie in line with query_frequency by only pulling rows whose updated_at moved
+* since the last cycle (the watermark), so a cycle costs as much as the writes since the
+* previous one and not as much as the whole table.
+*
+* The watermark is taken from the DB's own updated_at values, and every cycle looks back an
+* extra `overlapMillis` to catch rows committed late with an older timestamp. Rows are applied
+* with absolute frequencies, so seeing a row twice is harmless, but rows of the overlap window
+* already applied with the same updated_at are dropped, so a quiet cycle publishes nothing
+* (no new generation, the response cache stays warm).
+*
+* Every SuggestionDataStructure bean (one per ranking) is fed from the same cycle.
+*
+* Cycles run on a single scheduler thread, every `intervalMillis` plus a random jitter of up to
+* `jitterRatio` of it, so replicas drift apart instead of hitting the DB on the same beat. Each
+* failed cycle doubles the delay (capped at `maxBackoffMillis`) until one succeeds again.
+* Pause / resume / forced reloads go through SyncAdminController.
+*
+* The status fields are only written under the lock but are volatile, so getStatus() never waits
+* for a cycle or a forced reload to finish. The schedule starts in start(), once the bean is built.
+* */
+@Slf4j
 @Component
-public class DbToCacheSyncWorker implements Runnable {
+public class DbToCacheSyncWorker {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "db-to-trie-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<SuggestionDataStructure> suggestionDataStructures;
+    private final QueryFrequencyRepository queryFrequencyRepository;
+    private final long overlapMillis;
+    private final TypeaheadMetrics typeaheadMetrics;
+    private final long intervalMillis;
+    private final double jitterRatio;
+    private final long maxBackoffMillis;
 
-    private final SuggestionDataStructure suggestionDataStructure;
+    // guarded by this
+    private final Map<String, Date> appliedInOverlap = new HashMap<>(); // query -> updated_at already applied, rows of the overlap window only
+    private ScheduledFuture<?> nextCycle;
+
+    // written under this, read by getStatus() without it
+    private volatile Date watermark; // null until the first full reload
+    private volatile boolean paused;
+    private volatile int consecutiveFailures;
+    private volatile String lastError;
+    private volatile long lastRunAtMillis = -1;
+    private volatile long lastSuccessAtMillis = -1;
+    private volatile long lastDurationMillis = -1;
+    private volatile int lastAppliedRows;
+    private volatile long skippedCycles;
+    private volatile long nextRunAtMillis = -1;
 
     @Autowired
-    public DbToCacheSyncWorker(SuggestionDataStructure suggestionDataStructure) {
-        this.suggestionDataStructure = suggestionDataStructure;
+    public DbToCacheSyncWorker(List<SuggestionDataStructure> suggestionDataStructures,
+                               QueryFrequencyRepository queryFrequencyRepository,
+                               @Value("${search.typeahead.sync.overlap-millis:5000}") long overlapMillis,
+                               TypeaheadMetrics typeaheadMetrics,
+                               @Value("${search.typeahead.sync.enabled:true}") boolean enabled,
+                               @Value("${search.typeahead.sync.interval-millis:30000}") long intervalMillis,
+                               @Value("${search.typeahead.sync.jitter-ratio:0.2}") double jitterRatio,
+                               @Value("${search.typeahead.sync.max-backoff-millis:600000}") long maxBackoffMillis) {
+        this.suggestionDataStructures = suggestionDataStructures;
+        this.queryFrequencyRepository = queryFrequencyRepository;
+        this.overlapMillis = overlapMillis;
+        this.typeaheadMetrics = typeaheadMetrics;
+        this.intervalMillis = intervalMillis;
+        this.jitterRatio = Math.max(jitterRatio, 0);
+        this.maxBackoffMillis = Math.max(maxBackoffMillis, intervalMillis);
+        // the structures load themselves on startup, so the first cycle only has to look for deltas
+        this.paused = !enabled;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (!paused && nextCycle == null)
+            scheduleNext();
+    }
+
+    public synchronized void pause() {
+        paused = true;
+        if (nextCycle != null)
+            nextCycle.cancel(false);
+        nextRunAtMillis = -1;
+        log.info("DbToCacheSyncWorker: paused");
+    }
+
+    public synchronized void resume() {
+        if (!paused) return;
+        paused = false;
+        consecutiveFailures = 0;
+        scheduleNext();
+        log.info("DbToCacheSyncWorker: resumed, next cycle at {}", new Date(nextRunAtMillis));
+    }
+
+    public SyncStatus getStatus() {
+        return new SyncStatus(paused, watermark, lastRunAtMillis, lastSuccessAtMillis, lastDurationMillis,
+                lastAppliedRows, skippedCycles, consecutiveFailures, lastError, nextRunAtMillis);
+    }
+
+    // full rebuild of every structure from the DB, on the caller's thread
+    public synchronized void forceReload() {
+        log.info("DbToCacheSyncWorker: forced full reload");
+        fullReload();
     }
 
-    @Override
-    public void run() {
-        doSynchronization();
+    // rebuilds only the queries starting with firstChar, the watermark stays where it is
+    public synchronized void forceReloadShard(char firstChar) {
+        log.info("DbToCacheSyncWorker: forced reload of shard '{}'", firstChar);
+        for (SuggestionDataStructure suggestionDataStructure : suggestionDataStructures)
+            suggestionDataStructure.reloadShard(firstChar);
     }
 
-    private void doSynchronization() {
-        while (true) {
-            try {
-                Thread.sleep(30000);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+    public synchronized void syncOnce() {
+        long start = System.nanoTime();
+        lastRunAtMillis = System.currentTimeMillis();
+        int rows = 0;
+        boolean failed = true;
+        try {
+            rows = doSyncOnce();
+            failed = false;
+            consecutiveFailures = 0;
+            lastError = null;
+            lastSuccessAtMillis = System.currentTimeMillis();
+            lastAppliedRows = rows;
+        } catch (RuntimeException e) {
+            consecutiveFailures++;
+            lastError = e.toString();
+            throw e;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            lastDurationMillis = elapsedNanos / 1_000_000;
+            typeaheadMetrics.recordSync(elapsedNanos, rows, failed);
+        }
+    }
+
+    // returns the number of changed rows applied, 0 for a full reload or a quiet cycle
+    private int doSyncOnce() {
+        for (SuggestionDataStructure suggestionDataStructure : suggestionDataStructures) {
+            if (!suggestionDataStructure.isReady()) {
+                // its first build already reads everything, a full reload now would only do it twice
+                log.debug("DbToCacheSyncWorker: {} structure still building, skipping the cycle", suggestionDataStructure.getRanking());
+                skippedCycles++;
+                return 0;
             }
-            System.out.println("DbToCacheSyncWorker: starts: " + Thread.currentThread().getName());
-            suggestionDataStructure.reload();
         }
+        if (watermark == null)
+            watermark = loadedWatermark(); // e.g. loaded from a snapshot file, only deltas are missing
+        if (watermark == null) {
+            fullReload();
+            return 0;
+        }
+
+        Date since = new Date(watermark.getTime() - overlapMillis);
+        List<QueryFrequency> fetched = queryFrequencyRepository.findByUpdatedAtGreaterThanEqualOrderByUpdatedAtAsc(since);
+        List<QueryFrequency> changedEntries = new ArrayList<>(fetched.size());
+        for (QueryFrequency entry : fetched) {
+            if (!entry.getUpdatedAt().equals(appliedInOverlap.get(entry.getQuery())))
+                changedEntries.add(entry);
+        }
+        log.debug("DbToCacheSyncWorker: changed entries since {}: {} ({} already applied)",
+                since, changedEntries.size(), fetched.size() - changedEntries.size());
+        if (changedEntries.isEmpty()) {
+            skippedCycles++;
+            return 0;
+        }
+
+        for (SuggestionDataStructure suggestionDataStructure : suggestionDataStructures)
+            suggestionDataStructure.applyUpdates(changedEntries);
+        Date latest = changedEntries.get(changedEntries.size() - 1).getUpdatedAt();
+        if (latest.after(watermark))
+            watermark = latest;
+
+        for (QueryFrequency entry : changedEntries)
+            appliedInOverlap.put(entry.getQuery(), entry.getUpdatedAt());
+        long windowStart = watermark.getTime() - overlapMillis;
+        appliedInOverlap.values().removeIf(updatedAt -> updatedAt.getTime() < windowStart);
+        return changedEntries.size();
+    }
+
+    private void fullReload() {
+        // taken before the reload, anything written while it runs is picked up by the next delta
+        Date mark = queryFrequencyRepository.findMaxUpdatedAt();
+        suggestionDataStructures.forEach(SuggestionDataStructure::reload);
+        watermark = mark != null ? mark : new Date(0);
+        appliedInOverlap.clear();
+    }
+
+    // the oldest watermark all structures already hold, null as soon as one of them doesn't know its own
+    private Date loadedWatermark() {
+        Date oldest = null;
+        for (SuggestionDataStructure suggestionDataStructure : suggestionDataStructures) {
+            Date loaded = suggestionDataStructure.getLoadedWatermark();
+            if (loaded == null) return null;
+            if (oldest == null || loaded.before(oldest)) oldest = loaded;
+        }
+        return oldest;
+    }
+
+    private synchronized void runCycle() {
+        try {
+            syncOnce();
+        } catch (RuntimeException e) {
+            log.error("DbToCacheSyncWorker: sync failed ({} in a row), backing off", consecutiveFailures, e);
+        } finally {
+            if (!paused && !scheduler.isShutdown())
+                scheduleNext();
+        }
+    }
+
+    // interval * 2^failures (capped at maxBackoffMillis), plus up to jitterRatio of that at random
+    private synchronized void scheduleNext() {
+        long delay = intervalMillis;
+        for (int i = 0; i < consecutiveFailures && delay < maxBackoffMillis; i++)
+            delay *= 2;
+        delay = Math.min(delay, maxBackoffMillis);
+        delay += (long) (delay * jitterRatio * ThreadLocalRandom.current().nextDouble());
+        // only one cycle is ever pending, e.g. a resume() while a cycle runs
+        if (nextCycle != null)
+            nextCycle.cancel(false);
+        nextRunAtMillis = System.currentTimeMillis() + delay;
+        nextCycle = scheduler.schedule(this::runCycle, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
     }
 }
@@ -0,0 +1,110 @@
+package be.springboot.pp.searchtypeahead.workers;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import be.springboot.pp.searchtypeahead.internal.CountMinSketch;
+import be.springboot.pp.searchtypeahead.internal.SpaceSavingHeavyHitters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+* Admission filter in front of QueryFrequencyFlushWorker, so query_frequency (and the trie built
+* from it) only grows with queries that are actually searched for, not with every one-off typo.
+*
+*   - every hit is counted in a Count-Min sketch, nothing else is kept for a query seen once
+*   - the hit that brings a query to `admissionThreshold` admits it: it goes into the Space-Saving
+*     list of hot queries and the hits held back so far are handed to the flush worker at once
+*   - hits of a query in that list go straight to the flush worker, which batches them to the DB.
+*     That is the path almost every hit takes, so it takes no lock on the way (nor does the sketch),
+*     only admitting a query into the list and aging do
+*
+* The list is bounded (`heavyHitters` queries), a query pushed out of it by hotter ones has to
+* cross the threshold again. Every `sampleSize` hits, sketch and list are halved so both follow
+* what is hot now. An already persisted query that turned cold also has to be re-admitted,
+* the few hits it gets meanwhile are dropped, that is the price of keeping the table small.
+*
+* `search.typeahead.hot.admission-threshold=1` admits every hit (no filtering).
+* */
+@Component
+public class HotQueryTracker {
+
+    private final QueryFrequencyFlushWorker queryFrequencyFlushWorker;
+    private final CountMinSketch sketch;
+    private final SpaceSavingHeavyHitters heavyHitters;
+    private final int admissionThreshold;
+    private final long sampleSize;
+    private final AtomicLong hitsSinceAging = new AtomicLong();
+    private final AtomicLong admittedHits = new AtomicLong();
+    private final AtomicLong heldBackHits = new AtomicLong(); // counted in the sketch only, dropped unless the query gets admitted later
+
+    @Autowired
+    public HotQueryTracker(QueryFrequencyFlushWorker queryFrequencyFlushWorker,
+                           @Value("${search.typeahead.hot.admission-threshold:3}") int admissionThreshold,
+                           @Value("${search.typeahead.hot.sketch-depth:4}") int sketchDepth,
+                           @Value("${search.typeahead.hot.sketch-width:262144}") int sketchWidth,
+                           @Value("${search.typeahead.hot.heavy-hitters:10000}") int heavyHitters) {
+        this.queryFrequencyFlushWorker = queryFrequencyFlushWorker;
+        this.admissionThreshold = Math.max(admissionThreshold, 1);
+        this.sketch = new CountMinSketch(sketchDepth, sketchWidth);
+        this.heavyHitters = new SpaceSavingHeavyHitters(heavyHitters);
+        this.sampleSize = 10L * sketchWidth;
+    }
+
+    public void record(String query) {
+        if (admissionThreshold == 1) {
+            queryFrequencyFlushWorker.record(query);
+            return;
+        }
+        if (hitsSinceAging.incrementAndGet() >= sampleSize)
+            age();
+
+        if (heavyHitters.incrementIfPresent(query)) {
+            admit(query, 1);
+            return;
+        }
+        int estimate = sketch.add(query);
+        if (estimate < admissionThreshold) {
+            heldBackHits.incrementAndGet();
+            return;
+        }
+        // only the call that actually admits the query hands over the held back hits. The estimate can
+        // jump past the threshold (collisions) or overshoot it for a query admitted before and evicted
+        // since, so the backlog is capped at the threshold, the most a first admission can have held back.
+        if (heavyHitters.offer(query, estimate))
+            admit(query, Math.min(estimate, admissionThreshold));
+        else
+            admit(query, 1); // another thread admitted it meanwhile, this is one more tracked hit
+    }
+
+    public List<Suggestion> getHotQueries(int limit) {
+        return heavyHitters.top(limit);
+    }
+
+    public long getAdmittedHits() {
+        return admittedHits.get();
+    }
+
+    public long getHeldBackHits() {
+        return heldBackHits.get();
+    }
+
+    public int getTrackedQueries() {
+        return heavyHitters.size();
+    }
+
+    private void admit(String query, int hits) {
+        admittedHits.addAndGet(hits);
+        queryFrequencyFlushWorker.record(query, hits);
+    }
+
+    private void age() {
+        // only the thread that reached sampleSize resets it, the others keep counting
+        long hits = hitsSinceAging.get();
+        if (hits < sampleSize || !hitsSinceAging.compareAndSet(hits, 0)) return;
+        sketch.halve();
+        heavyHitters.halve();
+    }
+}
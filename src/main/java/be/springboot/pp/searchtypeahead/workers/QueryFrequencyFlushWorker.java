@@ -0,0 +1,104 @@
+package be.springboot.pp.searchtypeahead.workers;
+
+import be.springboot.pp.searchtypeahead.repositories.QueryFrequencyBatchWriter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+* Write-behind buffer for query hits.
+*
+* `/search/query` only bumps an in-memory counter (no DB), and a single background
+* thread drains the counters and writes the aggregated deltas through QueryFrequencyBatchWriter,
+* every `intervalMillis` or as soon as `maxPendingQueries` distinct queries are waiting.
+*
+* Hits still in memory are lost if the JVM dies, that is the trade-off for taking the DB
+* off the request path. A graceful shutdown flushes whatever is left.
+*
+* A counter is bumped with merge() and drained with remove(), both atomic per key in the
+* ConcurrentHashMap, so a hit either lands in the value the flusher takes or in a fresh entry
+* for the next flush, it can't land in a counter nobody reads anymore.
+* */
+@Slf4j
+@Component
+public class QueryFrequencyFlushWorker {
+
+    private final Map<String, Long> pendingHits = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "query-frequency-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final QueryFrequencyBatchWriter queryFrequencyBatchWriter;
+    private final int maxPendingQueries;
+
+    @Autowired
+    public QueryFrequencyFlushWorker(QueryFrequencyBatchWriter queryFrequencyBatchWriter,
+                                     @Value("${search.typeahead.flush.interval-millis:1000}") long intervalMillis,
+                                     @Value("${search.typeahead.flush.max-pending-queries:10000}") int maxPendingQueries) {
+        this.queryFrequencyBatchWriter = queryFrequencyBatchWriter;
+        this.maxPendingQueries = maxPendingQueries;
+        scheduler.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(String query) {
+        record(query, 1);
+    }
+
+    public void record(String query, long hits) {
+        pendingHits.merge(query, hits, Long::sum);
+        if (pendingHits.size() >= maxPendingQueries && !flushing.get() && !scheduler.isShutdown())
+            scheduler.execute(this::flush);
+    }
+
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) return;
+        try {
+            Map<String, Long> deltas = drain();
+            if (deltas.isEmpty()) return;
+            try {
+                queryFrequencyBatchWriter.incrementAll(deltas);
+                log.info("QueryFrequencyFlushWorker: flushed {} queries", deltas.size());
+            } catch (RuntimeException e) {
+                // put the hits back, they will go out with the next flush
+                log.error("QueryFrequencyFlushWorker: flush of {} queries failed", deltas.size(), e);
+                deltas.forEach(this::record);
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    private Map<String, Long> drain() {
+        Map<String, Long> deltas = new HashMap<>();
+        for (String query : pendingHits.keySet()) {
+            Long delta = pendingHits.remove(query);
+            if (delta != null && delta > 0)
+                deltas.merge(query, delta, Long::sum);
+        }
+        return deltas;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
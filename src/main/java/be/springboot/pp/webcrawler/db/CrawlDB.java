@@ -1,23 +1,200 @@
 package be.springboot.pp.webcrawler.db;
 
 import be.springboot.pp.webcrawler.dto.CrawlResult;
+import be.springboot.pp.webcrawler.enums.CrawlProcessStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/*
+* Crawl results, in memory while they run and for a while after.
+*
+* Running crawls are always kept. Finished ones are evicted once older than `maxAgeMillis`, and the
+* oldest finished ones first whenever more than `maxEntries` results are held.
+*
+* With `webcrawler.db.path` set, every finished crawl is also appended to that file as one line,
+* `<id>\t<json>\n`, and only the offset of each line stays on the heap. A result evicted from memory,
+* or finished before a restart, is read back from its line when asked for. The file is only ever
+* appended to; a line cut short by a crash is dropped when the file is opened again.
+*
+* Crawl ids come from nextId(), counting up from the highest id found in the file, so a new crawl
+* never collides with a stored one, however many the file holds.
+* */
+@Component
 public class CrawlDB {
 
-    private static final Map<Integer, CrawlResult> results = new HashMap<>();
+    private final Map<Integer, CrawlResult> results = new ConcurrentHashMap<>();
+    private final Map<Integer, Location> stored = new ConcurrentHashMap<>(); // id -> line in the file
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final long maxAgeMillis;
+    private final Path path; // null when results are kept in memory only
+    private FileChannel file; // appends guarded by this
 
-    public static void pushResult(CrawlResult crawlResult) {
-        results.put(crawlResult.getCrawlProcessId(), crawlResult);
+    @Autowired
+    public CrawlDB(ObjectMapper objectMapper,
+                   @Value("${webcrawler.db.max-entries:1000}") int maxEntries,
+                   @Value("${webcrawler.db.max-age-millis:3600000}") long maxAgeMillis,
+                   @Value("${webcrawler.db.path:}") String path) throws IOException {
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        this.path = path.isBlank() ? null : Path.of(path);
+        if (this.path != null)
+            openFile();
     }
 
-    public static CrawlResult getResult(int crawlProcessId) {
-        return results.get(crawlProcessId);
+    public int nextId() {
+        return lastId.incrementAndGet();
     }
 
-    public static boolean hasId(int crawlProcessId) {
-        return results.containsKey(crawlProcessId);
+    // false if the id is already taken, by a result in memory or in the file
+    public boolean pushResult(CrawlResult crawlResult) {
+        if (stored.containsKey(crawlResult.getCrawlProcessId())
+                || results.putIfAbsent(crawlResult.getCrawlProcessId(), crawlResult) != null)
+            return false;
+        evict();
+        return true;
+    }
+
+    // called once the crawl is FINISHED, writes it to the file and makes it evictable
+    public void finishResult(CrawlResult crawlResult) {
+        if (path != null)
+            append(crawlResult);
+        evict();
+    }
+
+    public CrawlResult getResult(int crawlProcessId) {
+        CrawlResult crawlResult = results.get(crawlProcessId);
+        if (crawlResult != null) return crawlResult;
+        Location location = stored.get(crawlProcessId);
+        return location == null ? null : read(location);
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        List<CrawlResult> finished = new ArrayList<>();
+        for (CrawlResult crawlResult : results.values()) {
+            if (crawlResult.getCrawlProcessStatus() != CrawlProcessStatus.FINISHED) continue;
+            if (now - crawlResult.getFinishedAtMillis() > maxAgeMillis)
+                results.remove(crawlResult.getCrawlProcessId(), crawlResult);
+            else
+                finished.add(crawlResult);
+        }
+        int excess = results.size() - maxEntries;
+        if (excess <= 0) return;
+        finished.sort(Comparator.comparingLong(CrawlResult::getFinishedAtMillis));
+        for (int i = 0; i < excess && i < finished.size(); i++)
+            results.remove(finished.get(i).getCrawlProcessId(), finished.get(i));
+    }
+
+    private synchronized void append(CrawlResult crawlResult) {
+        try {
+            StoredCrawl storedCrawl = new StoredCrawl(crawlResult.getCrawlProcessId(), crawlResult.getSeedUrl(),
+                    crawlResult.getFinishedAtMillis(), crawlResult.getUrlsFound());
+            byte[] json = objectMapper.writeValueAsBytes(storedCrawl);
+            byte[] prefix = (crawlResult.getCrawlProcessId() + "\t").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer line = ByteBuffer.allocate(prefix.length + json.length + 1).put(prefix).put(json).put((byte) '\n').flip();
+            long offset = file.position();
+            while (line.hasRemaining())
+                file.write(line);
+            file.force(false);
+            stored.put(crawlResult.getCrawlProcessId(), new Location(offset + prefix.length, json.length));
+        } catch (IOException e) {
+            // the result stays in memory until evicted, only its durability is lost
+            System.out.println("CrawlDB: failed to store crawl " + crawlResult.getCrawlProcessId() + " Error: " + e.getMessage());
+        }
+    }
+
+    private CrawlResult read(Location location) {
+        ByteBuffer json = ByteBuffer.allocate(location.length());
+        try {
+            // positional reads don't move the append position and may run concurrently with append()
+            while (json.hasRemaining()) {
+                if (file.read(json, location.offset() + json.position()) < 0)
+                    throw new EOFException("Crawl result cut short");
+            }
+            StoredCrawl storedCrawl = objectMapper.readValue(json.array(), StoredCrawl.class);
+            return new CrawlResult(storedCrawl.seedUrl(), storedCrawl.crawlProcessId(), storedCrawl.urlsFound(), storedCrawl.finishedAtMillis());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read crawl result at offset " + location.offset() + " of " + path, e);
+        }
+    }
+
+    // indexes the complete lines of the file and cuts off a partial last one
+    private void openFile() throws IOException {
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+        file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long lineStart = 0;
+        long position = 0;
+        ByteArrayOutputStream id = new ByteArrayOutputStream();
+        long jsonStart = -1;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    if (jsonStart > 0)
+                        index(id.toString(StandardCharsets.UTF_8), jsonStart, (int) (position - 1 - jsonStart));
+                    lineStart = position;
+                    jsonStart = -1;
+                    id.reset();
+                } else if (jsonStart < 0) {
+                    if (b == '\t') jsonStart = position;
+                    else id.write(b);
+                }
+            }
+        }
+        if (lineStart < file.size()) {
+            System.out.println("CrawlDB: dropping a partial line at the end of " + path);
+            file.truncate(lineStart);
+        }
+        file.position(lineStart);
+        System.out.println("CrawlDB: " + stored.size() + " finished crawls in " + path);
+    }
+
+    private void index(String id, long jsonStart, int jsonLength) {
+        try {
+            int crawlProcessId = Integer.parseInt(id);
+            stored.put(crawlProcessId, new Location(jsonStart, jsonLength));
+            lastId.accumulateAndGet(crawlProcessId, Math::max);
+        } catch (NumberFormatException e) {
+            System.out.println("CrawlDB: skipping a line without an id in " + path);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (file != null)
+            file.close();
+    }
+
+    private record Location(long offset, int length) {
+    }
+
+    record StoredCrawl(int crawlProcessId, String seedUrl, long finishedAtMillis, List<String> urlsFound) {
     }
 }
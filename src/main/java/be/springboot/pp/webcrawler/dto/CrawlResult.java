@@ -4,21 +4,38 @@ import be.springboot.pp.webcrawler.enums.CrawlProcessStatus;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/*
+* Written by the crawl worker while /crawl/results reads it from request threads: URLs go into a
+* lock-free queue and every getter returns a snapshot, status and finish time are volatile.
+* */
 public class CrawlResult {
 
     private final String seedUrl;
 
     private final int crawlProcessId;
 
-    private CrawlProcessStatus crawlProcessStatus = CrawlProcessStatus.CRAWLING;
+    private volatile CrawlProcessStatus crawlProcessStatus = CrawlProcessStatus.CRAWLING;
 
-    private final List<String> urlsFound;
+    private final Queue<String> urlsFound;
+
+    private volatile long finishedAtMillis = -1;
 
     public CrawlResult(String seedUrl, int crawlId) {
         this.seedUrl = seedUrl;
         this.crawlProcessId = crawlId;
-        this.urlsFound = new ArrayList<>();
+        this.urlsFound = new ConcurrentLinkedQueue<>();
+    }
+
+    // a finished crawl read back from the store
+    public CrawlResult(String seedUrl, int crawlId, List<String> urlsFound, long finishedAtMillis) {
+        this.seedUrl = seedUrl;
+        this.crawlProcessId = crawlId;
+        this.urlsFound = new ConcurrentLinkedQueue<>(urlsFound);
+        this.crawlProcessStatus = CrawlProcessStatus.FINISHED;
+        this.finishedAtMillis = finishedAtMillis;
     }
 
     public String getSeedUrl() {
@@ -30,6 +47,8 @@ public class CrawlResult {
     }
 
     public void setCrawlProcessStatus(CrawlProcessStatus crawlProcessStatus) {
+        if (crawlProcessStatus == CrawlProcessStatus.FINISHED && finishedAtMillis < 0)
+            finishedAtMillis = System.currentTimeMillis();
         this.crawlProcessStatus = crawlProcessStatus;
     }
 
@@ -37,7 +56,16 @@ public class CrawlResult {
         return crawlProcessStatus;
     }
 
+    public long getFinishedAtMillis() {
+        return finishedAtMillis;
+    }
+
     public void addUrl(String url) {
         urlsFound.add(url);
     }
+
+    // URLs found so far, in the order they were found
+    public List<String> getUrlsFound() {
+        return new ArrayList<>(urlsFound);
+    }
 }
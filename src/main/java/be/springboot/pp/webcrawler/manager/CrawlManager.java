@@ -3,33 +3,62 @@ package be.springboot.pp.webcrawler.manager;
 import be.springboot.pp.webcrawler.db.CrawlDB;
 import be.springboot.pp.webcrawler.dto.CrawlResult;
 import be.springboot.pp.webcrawler.workers.CrawlWorker;
+import be.springboot.pp.webcrawler.workers.PageFetcher;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.FutureTask;
 
 @Component
 public class CrawlManager {
 
-    private static final ExecutorService threadPool = Executors.newFixedThreadPool(5);
+    // one virtual thread per running job, it only coordinates, the fetches run in PageFetcher
+    private static final ExecutorService threadPool = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final PageFetcher pageFetcher;
+
+    private final CrawlDB crawlDB;
+
+    private final int maxDepth;
+
+    private final int maxInFlightPerJob;
+
+    @Autowired
+    public CrawlManager(PageFetcher pageFetcher,
+                        CrawlDB crawlDB,
+                        @Value("${webcrawler.max-depth:1}") int maxDepth,
+                        @Value("${webcrawler.max-in-flight-per-job:16}") int maxInFlightPerJob) {
+        this.pageFetcher = pageFetcher;
+        this.crawlDB = crawlDB;
+        this.maxDepth = maxDepth;
+        this.maxInFlightPerJob = maxInFlightPerJob;
+    }
 
     public CrawlResult start(String seedUrl) {
-        int crawlProcessId = 0;
-        Random random = new Random();
-        while (true) {
-            crawlProcessId = random.nextInt(1, 100000);
-            if (!CrawlDB.hasId(crawlProcessId))
-                break;
-        }
-        CrawlResult crawlResult = new CrawlResult(seedUrl, crawlProcessId);
-        threadPool.submit(new FutureTask<>(new CrawlWorker(crawlResult)));
-        CrawlDB.pushResult(crawlResult);
+        CrawlResult crawlResult = new CrawlResult(seedUrl, crawlDB.nextId());
+        // published before the crawl starts, so /results can already see it
+        if (!crawlDB.pushResult(crawlResult))
+            throw new IllegalStateException("Crawl id " + crawlResult.getCrawlProcessId() + " is already taken");
+        CrawlWorker crawlWorker = new CrawlWorker(crawlResult, maxDepth, pageFetcher, maxInFlightPerJob);
+        threadPool.submit(() -> {
+            try {
+                return crawlWorker.call();
+            } finally {
+                crawlDB.finishResult(crawlResult);
+            }
+        });
         return crawlResult;
     }
 
     public CrawlResult getResult(int crawlProcessId) {
-        return CrawlDB.getResult(crawlProcessId);
+        return crawlDB.getResult(crawlProcessId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        threadPool.shutdownNow();
     }
 }
@@ -0,0 +1,110 @@
+package be.springboot.pp.webcrawler.utils;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+* Brings the different spellings of a page to one string, so the crawler doesn't visit it twice:
+*
+*   HTTPS://Example.COM:443/a/./b/../c?y=2&x=1#top  ->  https://example.com/a/c?x=1&y=2
+*
+* scheme and host lowercased, default port dropped, empty path made "/", "." and ".." segments
+* resolved, fragment dropped, query parameters sorted. Path and parameter values keep their case.
+*
+* Characters a URI can't hold, like the raw spaces and non-ASCII letters Jsoup's absUrl() leaves in
+* links, are percent-encoded (UTF-8) first, escapes already in the URL are kept as they are.
+* */
+public final class UrlCanonicalizer {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private UrlCanonicalizer() {
+    }
+
+    // null if url is not an absolute http(s) URL we can parse
+    public static String canonicalize(String url) {
+        URI uri;
+        try {
+            uri = new URI(escapeIllegal(url.trim())).normalize();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (uri.getScheme() == null || uri.getRawAuthority() == null || uri.getHost() == null) return null;
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) return null;
+
+        StringBuilder canonical = new StringBuilder(url.length());
+        canonical.append(scheme).append("://");
+        if (uri.getRawUserInfo() != null)
+            canonical.append(uri.getRawUserInfo()).append('@');
+        canonical.append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(scheme.equals("http") && port == 80) && !(scheme.equals("https") && port == 443))
+            canonical.append(':').append(port);
+
+        String path = uri.getRawPath();
+        canonical.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            String[] parameters = query.split("&");
+            Arrays.sort(parameters);
+            boolean first = true;
+            for (String parameter : parameters) {
+                if (parameter.isEmpty()) continue;
+                canonical.append(first ? '?' : '&').append(parameter);
+                first = false;
+            }
+        }
+        return canonical.toString();
+    }
+
+    // percent-encodes every char that is not legal anywhere in a URI, and a '%' that doesn't start an escape
+    static String escapeIllegal(String url) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < url.length(); ) {
+            int codePoint = url.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+            boolean legal = codePoint < 0x80 && (codePoint == '%' ? isEscape(url, i) : isLegal((char) codePoint));
+            if (!legal && escaped == null)
+                escaped = new StringBuilder(url.length() + 16).append(url, 0, i);
+            if (escaped != null) {
+                if (legal) {
+                    escaped.append((char) codePoint);
+                } else {
+                    for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8))
+                        escaped.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+                }
+            }
+            i = next;
+        }
+        return escaped == null ? url : escaped.toString();
+    }
+
+    private static boolean isLegal(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || "-._~:/?#[]@!$&'()*+,;=".indexOf(c) >= 0;
+    }
+
+    private static boolean isEscape(String url, int i) {
+        return i + 2 < url.length() && Character.digit(url.charAt(i + 1), 16) >= 0 && Character.digit(url.charAt(i + 2), 16) >= 0;
+    }
+
+    // 64-bit FNV-1a of the canonical URL, with a final avalanche so the low bits are usable as a hash slot
+    public static long fingerprint(String canonicalUrl) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < canonicalUrl.length(); i++) {
+            hash ^= canonicalUrl.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,73 @@
+package be.springboot.pp.webcrawler.utils;
+
+/*
+* Set of visited URLs that only keeps a 64-bit fingerprint of each (see UrlCanonicalizer.fingerprint),
+* in an open addressing long[] kept at most 2/3 full: 8 to 16 bytes per URL instead of ~100 for a
+* String in a HashSet. Two URLs sharing a fingerprint would make the second look visited, with
+* 64 bits that takes ~10^9 URLs in one crawl to become likely.
+*
+* add() and contains() are synchronized, the set is shared by all the fetches of a job.
+* */
+public class UrlFingerprintSet {
+
+    private static final long EMPTY = 0; // fingerprint 0 is stored as 1
+
+    private long[] slots;
+    private int size;
+
+    public UrlFingerprintSet() {
+        this(1024);
+    }
+
+    public UrlFingerprintSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 3 / 2, 16) - 1) << 1;
+        this.slots = new long[capacity];
+    }
+
+    // true if the URL was not in the set yet
+    public synchronized boolean add(String canonicalUrl) {
+        long fingerprint = nonEmpty(UrlCanonicalizer.fingerprint(canonicalUrl));
+        if (!insert(slots, fingerprint)) return false;
+        if (++size * 3 > slots.length * 2)
+            grow();
+        return true;
+    }
+
+    public synchronized boolean contains(String canonicalUrl) {
+        long fingerprint = nonEmpty(UrlCanonicalizer.fingerprint(canonicalUrl));
+        int mask = slots.length - 1;
+        for (int i = (int) fingerprint & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+            if (slots[i] == fingerprint) return true;
+        }
+        return false;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // linear probing, false if already present
+    private static boolean insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        int i = (int) fingerprint & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == fingerprint) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = fingerprint;
+        return true;
+    }
+
+    private void grow() {
+        long[] grown = new long[slots.length * 2];
+        for (long fingerprint : slots) {
+            if (fingerprint != EMPTY)
+                insert(grown, fingerprint);
+        }
+        slots = grown;
+    }
+
+    private static long nonEmpty(long fingerprint) {
+        return fingerprint == EMPTY ? 1 : fingerprint;
+    }
+}
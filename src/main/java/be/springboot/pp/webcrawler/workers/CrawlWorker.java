@@ -2,62 +2,114 @@ package be.springboot.pp.webcrawler.workers;
 
 import be.springboot.pp.webcrawler.dto.CrawlResult;
 import be.springboot.pp.webcrawler.enums.CrawlProcessStatus;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
-
-import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import be.springboot.pp.webcrawler.utils.UrlCanonicalizer;
+import be.springboot.pp.webcrawler.utils.UrlFingerprintSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 
+/*
+* Breadth-first crawl of one job, level by level.
+*
+* All the URLs of a level are fetched concurrently through PageFetcher, at most `maxInFlight`
+* at a time for this job, and every new link they contain goes into the frontier of the next level.
+* The next level starts once the whole current one is done, so a level takes about as long as its
+* slowest fetch and not the sum of all of them.
+*
+* Pages of the last level (depth == maxDepth) are only recorded, not fetched: their links would
+* be past maxDepth anyway.
+*
+* Links are canonicalized (UrlCanonicalizer) before the seen check, so `https://a/b#x` and
+* `https://A:443/b` are the same page, and only a 64-bit fingerprint of each is remembered.
+*
+* Interrupting the job (e.g. its executor shutting down) cancels the fetches of the level still
+* running, which interrupts their virtual threads in PageFetcher.
+* */
 public class CrawlWorker implements Callable<CrawlResult> {
     private final CrawlResult crawlResult;
 
     private final int maxDepth;
 
-    public CrawlWorker(CrawlResult crawlResult) {
-        this.crawlResult = crawlResult;
-        this.maxDepth = 1;
+    private final PageFetcher pageFetcher;
+
+    private final Semaphore inFlight;
+
+    private final UrlFingerprintSet visitedUrls = new UrlFingerprintSet();
+
+    public CrawlWorker(CrawlResult crawlResult, PageFetcher pageFetcher, int maxInFlight) {
+        this(crawlResult, 1, pageFetcher, maxInFlight);
     }
 
-    public CrawlWorker(CrawlResult crawlResult, int maxDepth) {
+    public CrawlWorker(CrawlResult crawlResult, int maxDepth, PageFetcher pageFetcher, int maxInFlight) {
         this.crawlResult = crawlResult;
         this.maxDepth = maxDepth;
+        this.pageFetcher = pageFetcher;
+        this.inFlight = new Semaphore(maxInFlight);
     }
 
     @Override
     public CrawlResult call() throws Exception {
-        Set<String> visitedUrls = new HashSet<>();
         System.out.println("will start crawling now!!");
-        int depth = 0;
-        crawl(crawlResult, crawlResult.getSeedUrl(), visitedUrls, depth);
-        System.out.println("finished crawling");
-        crawlResult.setCrawlProcessStatus(CrawlProcessStatus.FINISHED);
+        try {
+            String seedUrl = UrlCanonicalizer.canonicalize(crawlResult.getSeedUrl());
+            List<String> level = new ArrayList<>();
+            level.add(seedUrl != null ? seedUrl : crawlResult.getSeedUrl()); // an invalid seed is still reported, its fetch just fails
+            visitedUrls.add(level.get(0));
+            for (int depth = 0; !level.isEmpty(); depth++) {
+                for (String url : level) {
+                    System.out.println("new URL: " + url);
+                    crawlResult.addUrl(url);
+                }
+                if (depth == maxDepth) break;
+                level = crawlLevel(level);
+            }
+            System.out.println("finished crawling");
+        } finally {
+            crawlResult.setCrawlProcessStatus(CrawlProcessStatus.FINISHED);
+        }
         return crawlResult;
     }
 
-    public void crawl(CrawlResult crawlResult, String url, Set<String> visitedUrls, int curDepth) {
-        if (visitedUrls.contains(url) || curDepth > maxDepth) return;
-
-        System.out.println("new URL: " + url);
-        visitedUrls.add(url);
-        crawlResult.addUrl(url);
-
+    // fetches every URL of the level, returns the unseen links found on them (the next level)
+    private List<String> crawlLevel(List<String> level) throws InterruptedException {
+        Queue<String> frontier = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<List<String>>> fetches = new ArrayList<>(level.size()); // cancelling these reaches the fetch
+        List<CompletableFuture<Void>> pages = new ArrayList<>(level.size());
         try {
-            Document doc = Jsoup.connect(url).get();
-            Elements links = doc.select("a[href]");
-
-            for (Element link : links) {
-                String absoluteLink = link.absUrl("href");
-                if (!visitedUrls.contains(absoluteLink) && absoluteLink.startsWith("https://"))
-                    crawl(crawlResult, absoluteLink, visitedUrls, curDepth + 1);
+            for (String url : level) {
+                inFlight.acquire(); // this job's share, PageFetcher applies the global cap
+                CompletableFuture<List<String>> fetch = pageFetcher.fetchLinks(url);
+                fetches.add(fetch);
+                pages.add(fetch
+                        .whenComplete((links, error) -> inFlight.release())
+                        .exceptionally(error -> {
+                            // one page failing in an unexpected way costs its links, not the whole job
+                            System.out.println("failed to crawl URL: " + url + " Error: " + error);
+                            return List.of();
+                        })
+                        .thenAccept(links -> {
+                            for (String link : links) {
+                                String canonicalLink = UrlCanonicalizer.canonicalize(link);
+                                if (canonicalLink != null && canonicalLink.startsWith("https://") && visitedUrls.add(canonicalLink))
+                                    frontier.add(canonicalLink);
+                            }
+                        }));
             }
-            // ...
-        } catch (IOException e) {
-//            e.printStackTrace();
-            System.out.println("failed to crawl URL: " + url  + " Error: " + e.getMessage());
+            // get() and not join(), so an interrupt ends the wait
+            CompletableFuture.allOf(pages.toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            fetches.forEach(fetch -> fetch.cancel(true));
+            throw e;
         }
+        return new ArrayList<>(frontier);
     }
 }
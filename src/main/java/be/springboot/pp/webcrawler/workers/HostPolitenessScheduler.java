@@ -0,0 +1,69 @@
+package be.springboot.pp.webcrawler.workers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+* Keeps the crawler polite with every host: at most `maxConcurrencyPerHost` fetches to a host
+* at once, and request starts to the same host at least `minDelayMillis` apart.
+*
+* Every fetch books the next free start time of its host (its turn in the host's queue) and its
+* virtual thread sleeps until then, so waiting costs no platform thread and fetches to other
+* hosts are not held up. acquire() must be paired with release() once the response is read.
+*
+* One small entry is kept per host seen, for the lifetime of the app.
+* */
+public class HostPolitenessScheduler {
+
+    private final int maxConcurrencyPerHost;
+    private final long minDelayNanos;
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+
+    public HostPolitenessScheduler(int maxConcurrencyPerHost, long minDelayMillis) {
+        this.maxConcurrencyPerHost = maxConcurrencyPerHost;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+    }
+
+    // blocks until host may be sent one more request
+    public void acquire(String host) throws InterruptedException {
+        HostQueue queue = hosts.computeIfAbsent(host, h -> new HostQueue(maxConcurrencyPerHost));
+        queue.permits.acquire();
+        try {
+            long waitNanos = queue.bookNextStart(minDelayNanos);
+            if (waitNanos > 0)
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            queue.permits.release();
+            throw e;
+        }
+    }
+
+    public void release(String host) {
+        HostQueue queue = hosts.get(host);
+        if (queue != null)
+            queue.permits.release();
+    }
+
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    private static final class HostQueue {
+        private final Semaphore permits;
+        private long nextStartNanos = System.nanoTime(); // guarded by this
+
+        private HostQueue(int maxConcurrency) {
+            this.permits = new Semaphore(maxConcurrency, true); // fair, first come first fetched
+        }
+
+        // books the next start slot, returns how long to wait for it
+        private synchronized long bookNextStart(long minDelayNanos) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextStartNanos);
+            nextStartNanos = start + minDelayNanos;
+            return start - now;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package be.springboot.pp.webcrawler.workers;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/*
+* Reads only what the crawler can use: the body of a 2xx HTML page, and at most `maxBodyBytes` of it.
+*
+* Any other response (an image, a PDF, an error page) has its body cancelled as soon as the headers
+* are in and comes back as an empty array, without a byte of it downloaded or buffered. A page over
+* the limit is cut at `maxBodyBytes` and the rest of the download cancelled, Jsoup parses what was
+* read, like its own maxBodySize did.
+* */
+public class HtmlBodyHandler implements HttpResponse.BodyHandler<byte[]> {
+
+    private static final byte[] NO_BODY = new byte[0];
+
+    private final int maxBodyBytes;
+
+    public HtmlBodyHandler(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<byte[]> apply(HttpResponse.ResponseInfo responseInfo) {
+        boolean wanted = responseInfo.statusCode() / 100 == 2 && isHtml(responseInfo.headers());
+        return new CappedSubscriber(wanted ? maxBodyBytes : 0);
+    }
+
+    // a missing Content-Type is given the benefit of the doubt
+    public static boolean isHtml(HttpHeaders headers) {
+        String mediaType = headers.firstValue("Content-Type").orElse("text/html").split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return mediaType.equals("text/html") || mediaType.equals("application/xhtml+xml");
+    }
+
+    private static final class CappedSubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final int maxBytes;
+        private Flow.Subscription subscription;
+
+        private CappedSubscriber(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (maxBytes <= 0) {
+                subscription.cancel();
+                body.complete(NO_BODY);
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (body.isDone()) return; // buffers already on their way when we cancelled
+            for (ByteBuffer buffer : buffers) {
+                byte[] chunk = new byte[Math.min(buffer.remaining(), maxBytes - bytes.size())];
+                buffer.get(chunk);
+                bytes.writeBytes(chunk);
+            }
+            if (bytes.size() >= maxBytes) {
+                subscription.cancel();
+                body.complete(bytes.toByteArray());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(bytes.toByteArray());
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package be.springboot.pp.webcrawler.workers;
+
+import jakarta.annotation.PreDestroy;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/*
+* Fetches pages for every crawl job.
+*
+* Each fetch runs on its own virtual thread, so a page stuck on a slow host only parks a virtual
+* thread, and thousands of fetches can wait on the network at once. How many actually do is capped
+* by `maxInFlight` here (all jobs together) and by a per-job semaphore in CrawlWorker, not by a pool size.
+* On top of that HostPolitenessScheduler bounds the concurrency and the request rate per host.
+*
+* Requests go through one shared java.net.http.HttpClient, which keeps connections alive and
+* speaks HTTP/2 where the server does, so the fetches to a host share a connection instead of
+* each paying its own TCP + TLS handshake. Jsoup only parses the downloaded bytes.
+* HtmlBodyHandler only downloads HTML bodies, and no more than `maxBodyBytes` of each.
+*
+* Parsing the HTML is CPU work, it is handed to a fixed pool of `parseThreads` platform threads
+* (one per core by default) so a burst of downloads can't oversubscribe the CPU.
+*
+* Cancelling the future of a fetch interrupts its virtual thread, which aborts the request
+* (HttpClient.send() gives up on interrupt) or the wait for a politeness / in-flight permit.
+* */
+@Component
+public class PageFetcher {
+
+    private final ExecutorService fetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ExecutorService parsePool;
+
+    private final Semaphore inFlight;
+
+    private final HostPolitenessScheduler politenessScheduler;
+
+    private final HttpClient httpClient;
+
+    private final Duration requestTimeout;
+
+    private final String userAgent;
+
+    private final HtmlBodyHandler bodyHandler;
+
+    @Autowired
+    public PageFetcher(@Value("${webcrawler.max-in-flight:1000}") int maxInFlight,
+                       @Value("${webcrawler.parse-threads:0}") int parseThreads,
+                       @Value("${webcrawler.host.max-concurrency:2}") int maxConcurrencyPerHost,
+                       @Value("${webcrawler.host.min-delay-millis:500}") long minDelayPerHostMillis,
+                       @Value("${webcrawler.connect-timeout-millis:10000}") long connectTimeoutMillis,
+                       @Value("${webcrawler.request-timeout-millis:30000}") long requestTimeoutMillis,
+                       @Value("${webcrawler.user-agent:pp-webcrawler}") String userAgent,
+                       @Value("${webcrawler.max-body-bytes:2097152}") int maxBodyBytes) {
+        this.inFlight = new Semaphore(maxInFlight);
+        // 0 = one parse thread per core
+        this.parsePool = Executors.newFixedThreadPool(parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors());
+        this.politenessScheduler = new HostPolitenessScheduler(maxConcurrencyPerHost, minDelayPerHostMillis);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2) // falls back to HTTP/1.1 keep-alive when the server can't
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .executor(fetchExecutor)
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMillis);
+        this.userAgent = userAgent;
+        this.bodyHandler = new HtmlBodyHandler(maxBodyBytes);
+    }
+
+    // completes with the absolute links of the page, or with no links if it couldn't be fetched,
+    // cancelling it interrupts the fetch
+    public CompletableFuture<List<String>> fetchLinks(String url) {
+        CompletableFuture<List<String>> links = new CompletableFuture<>();
+        Future<?> task = fetchExecutor.submit(() -> {
+            try {
+                links.complete(fetchAndExtract(url));
+            } catch (Throwable e) {
+                links.completeExceptionally(e);
+            }
+        });
+        // a CompletableFuture can't interrupt what computes it, the task behind it can
+        links.whenComplete((result, error) -> {
+            if (links.isCancelled())
+                task.cancel(true);
+        });
+        return links;
+    }
+
+    private List<String> fetchAndExtract(String url) {
+        HttpResponse<byte[]> response;
+        try {
+            response = fetch(url);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("failed to crawl URL: " + url + " Error: " + e.getMessage());
+            return Collections.emptyList();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+        if (response.statusCode() / 100 != 2) {
+            System.out.println("failed to crawl URL: " + url + " Status: " + response.statusCode());
+            return Collections.emptyList();
+        }
+        if (!HtmlBodyHandler.isHtml(response.headers())) {
+            System.out.println("skipping URL: " + url + " Content-Type: " + response.headers().firstValue("Content-Type").orElse(""));
+            return Collections.emptyList();
+        }
+        // the virtual thread just parks here while a parse thread does the CPU work
+        return CompletableFuture.supplyAsync(() -> extractLinks(response), parsePool).join();
+    }
+
+    private HttpResponse<byte[]> fetch(String url) throws IOException, InterruptedException {
+        URI uri = URI.create(url);
+        if (uri.getHost() == null)
+            throw new IllegalArgumentException("No host in URL: " + url);
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .header("User-Agent", userAgent)
+                .header("Accept", "text/html,application/xhtml+xml")
+                .GET()
+                .build();
+
+        politenessScheduler.acquire(host);
+        try {
+            inFlight.acquire();
+            try {
+                return httpClient.send(request, bodyHandler);
+            } finally {
+                inFlight.release();
+            }
+        } finally {
+            politenessScheduler.release(host);
+        }
+    }
+
+    private List<String> extractLinks(HttpResponse<byte[]> response) {
+        try {
+            // the charset of the Content-Type header if any, otherwise Jsoup sniffs it from the bytes
+            Document doc = Jsoup.parse(new ByteArrayInputStream(response.body()), charsetOf(response), response.uri().toString());
+            List<String> links = new ArrayList<>();
+            for (Element link : doc.select("a[href]"))
+                links.add(link.absUrl("href"));
+            return links;
+        } catch (IOException e) {
+            System.out.println("failed to parse URL: " + response.uri() + " Error: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    // null (let Jsoup sniff) when the header has no charset or one this JVM can't decode, e.g. `charset=` or `charset=x-unknown`
+    private static String charsetOf(HttpResponse<byte[]> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        for (String parameter : contentType.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.regionMatches(true, 0, "charset=", 0, "charset=".length()))
+                return supportedOrNull(trimmed.substring("charset=".length()).replace("\"", "").trim());
+        }
+        return null;
+    }
+
+    private static String supportedOrNull(String charset) {
+        try {
+            return !charset.isEmpty() && Charset.isSupported(charset) ? charset : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+        parsePool.shutdownNow();
+    }
+}
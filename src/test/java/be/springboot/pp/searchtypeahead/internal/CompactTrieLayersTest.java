@@ -0,0 +1,84 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static be.springboot.pp.searchtypeahead.internal.CompactTrieSnapshotFileTest.entries;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactTrieLayersTest {
+
+    private static final int MAX_DEPTH = 5;
+    private static final int MAX_SUGGESTIONS = 3;
+
+    @TempDir
+    Path dir;
+
+    // the base is the mapped file, like on a restart from a snapshot
+    private CompactTrieLayers mappedBase(Map<String, Long> rows) throws IOException {
+        CompactTrieBuilder builder = new CompactTrieBuilder();
+        rows.forEach(builder::add);
+        Path file = dir.resolve("trie.snapshot");
+        CompactTrieSnapshotFile.write(builder.build(MAX_SUGGESTIONS, MAX_DEPTH), MAX_SUGGESTIONS, MAX_DEPTH, 0L, file);
+        CompactTrie base = CompactTrieSnapshotFile.open(file).trie();
+        assertTrue(base.isMapped());
+        return CompactTrieLayers.of(base);
+    }
+
+    @Test
+    void overlayRowReplacesItsStaleCopyInTheBase() throws IOException {
+        CompactTrieLayers layers = mappedBase(Map.of("apple", 50L, "apply", 40L, "ape", 30L, "apex", 20L))
+                .withOverlay(Map.of("apex", 60L), MAX_SUGGESTIONS, MAX_DEPTH);
+
+        assertEquals(List.of("apex=60", "apple=50", "apply=40"), entries(layers.getTopSuggestions("ap", MAX_SUGGESTIONS)));
+        assertEquals(List.of("apex=60", "ape=30"), entries(layers.getTopSuggestions("ape", MAX_SUGGESTIONS)));
+    }
+
+    @Test
+    void queriesOnlyInTheOverlayAreFound() throws IOException {
+        CompactTrieLayers layers = mappedBase(Map.of("apple", 50L, "banana", 40L))
+                .withOverlay(Map.of("cherry", 70L, "apricot", 10L), MAX_SUGGESTIONS, MAX_DEPTH);
+
+        assertEquals(List.of("cherry=70"), entries(layers.getTopSuggestions("ch", MAX_SUGGESTIONS)));
+        assertEquals(List.of("apple=50", "apricot=10"), entries(layers.getTopSuggestions("ap", MAX_SUGGESTIONS)));
+        assertEquals(List.of("cherry=70", "apple=50", "banana=40"), entries(layers.getTopSuggestions("", MAX_SUGGESTIONS)));
+        assertEquals(List.of(), entries(layers.getTopSuggestions("x", MAX_SUGGESTIONS)));
+    }
+
+    @Test
+    void layersAnswerLikeATrieBuiltFromAllRows() throws IOException {
+        Map<String, Long> baseRows = new HashMap<>();
+        String[] words = {"a", "ab", "abc", "abcd", "abd", "b", "ba", "bab", "bac", "c", "ca", "cab", "abcde", "abcdf"};
+        for (int i = 0; i < words.length; i++)
+            baseRows.put(words[i], 100L + 10 * i);
+        Map<String, Long> overlayRows = Map.of("abd", 500L, "bac", 310L, "cc", 255L, "abcdf", 1000L);
+        CompactTrieLayers layers = mappedBase(baseRows).withOverlay(overlayRows, MAX_SUGGESTIONS, MAX_DEPTH);
+
+        Map<String, Long> allRows = new HashMap<>(baseRows);
+        allRows.putAll(overlayRows);
+        CompactTrieBuilder reference = new CompactTrieBuilder();
+        allRows.forEach(reference::add);
+        CompactTrie expected = reference.build(MAX_SUGGESTIONS, MAX_DEPTH);
+        CompactTrie compacted = layers.compact(layers.overlayRows(), MAX_SUGGESTIONS, MAX_DEPTH);
+
+        for (String query : allRows.keySet()) {
+            List<List<String>> alongPath = layers.getTopSuggestionsAlongPath(query, MAX_SUGGESTIONS).stream()
+                    .map(CompactTrieSnapshotFileTest::entries)
+                    .toList();
+            for (int length = 1; length <= query.length(); length++) {
+                String prefix = query.substring(0, length);
+                List<String> answer = entries(expected.getTopSuggestions(prefix));
+                assertEquals(answer, entries(layers.getTopSuggestions(prefix, MAX_SUGGESTIONS)));
+                assertEquals(answer, alongPath.get(length - 1));
+                assertEquals(answer, entries(compacted.getTopSuggestions(prefix)));
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactTrieSnapshotFileTest {
+
+    private static final int MAX_DEPTH = 5;
+    private static final int MAX_SUGGESTIONS = 3;
+    private static final List<String> QUERIES = List.of("apple", "application", "apply", "ape", "banana", "band", "café", "cafeteria");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void mappedTrieAnswersLikeTheOneItWasWrittenFrom() throws IOException {
+        CompactTrie built = build();
+        Path file = dir.resolve("trie.snapshot");
+        CompactTrieSnapshotFile.write(built, MAX_SUGGESTIONS, MAX_DEPTH, 1234L, file);
+
+        CompactTrieSnapshotFile.Snapshot snapshot = CompactTrieSnapshotFile.open(file);
+        CompactTrie mapped = snapshot.trie();
+        assertFalse(built.isMapped());
+        assertTrue(mapped.isMapped());
+        assertEquals(MAX_SUGGESTIONS, snapshot.maxSuggestions());
+        assertEquals(MAX_DEPTH, snapshot.maxDepth());
+        assertEquals(1234L, snapshot.watermarkMillis());
+        assertEquals(built.getNodeCount(), mapped.getNodeCount());
+        assertEquals(built.getSuggestionCount(), mapped.getSuggestionCount());
+
+        for (int id = 0; id < built.getSuggestionCount(); id++) {
+            assertEquals(built.getQuery(id), mapped.getQuery(id));
+            assertEquals(built.getFrequency(id), mapped.getFrequency(id));
+        }
+        for (String query : QUERIES)
+            for (int length = 0; length <= query.length(); length++) {
+                String prefix = query.substring(0, length);
+                assertEquals(entries(built.getTopSuggestions(prefix)), entries(mapped.getTopSuggestions(prefix)));
+            }
+        assertEquals(List.of("café=30", "cafeteria=20"), entries(mapped.getTopSuggestions("caf")));
+        assertEquals(List.of(), entries(mapped.getTopSuggestions("x")));
+    }
+
+    @Test
+    void truncatedFileIsRefused() throws IOException {
+        Path file = dir.resolve("trie.snapshot");
+        CompactTrieSnapshotFile.write(build(), MAX_SUGGESTIONS, MAX_DEPTH, 0L, file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThrows(IOException.class, () -> CompactTrieSnapshotFile.open(file));
+    }
+
+    @Test
+    void fileOfAnotherFormatIsRefused() throws IOException {
+        Path file = dir.resolve("trie.snapshot");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IOException.class, () -> CompactTrieSnapshotFile.open(file));
+    }
+
+    // distinct frequencies, so the order of every top-K is fixed
+    private static CompactTrie build() {
+        CompactTrieBuilder builder = new CompactTrieBuilder();
+        for (int i = 0; i < QUERIES.size(); i++)
+            builder.add(QUERIES.get(i), 10L * (QUERIES.size() - i + 1));
+        return builder.build(MAX_SUGGESTIONS, MAX_DEPTH);
+    }
+
+    static List<String> entries(List<Suggestion> suggestions) {
+        return suggestions.stream().map(suggestion -> suggestion.getSuggestion() + "=" + suggestion.getFrequency()).toList();
+    }
+}
@@ -0,0 +1,73 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1024;
+    private static final int KEYS = 5000;
+
+    // key i is hit (i % 10) + 1 times, ~27500 hits over 5x more keys than counters per row
+    private static CountMinSketch loaded() {
+        CountMinSketch sketch = new CountMinSketch(DEPTH, WIDTH);
+        for (int i = 0; i < KEYS; i++)
+            for (int hit = 0; hit <= i % 10; hit++)
+                sketch.add("query-" + i);
+        return sketch;
+    }
+
+    @Test
+    void neverUnderestimates() {
+        CountMinSketch sketch = loaded();
+        for (int i = 0; i < KEYS; i++)
+            assertTrue(sketch.estimate("query-" + i) >= i % 10 + 1, "query-" + i);
+    }
+
+    @Test
+    void overestimatesStayWithinTheBound() {
+        CountMinSketch sketch = loaded();
+        long hits = 0;
+        for (int i = 0; i < KEYS; i++)
+            hits += i % 10 + 1;
+        // e * hits / width, exceeded with probability at most e^-depth (~1.8%)
+        double bound = Math.E * hits / WIDTH;
+        int beyond = 0;
+        for (int i = 0; i < KEYS; i++)
+            if (sketch.estimate("query-" + i) - (i % 10 + 1) > bound)
+                beyond++;
+        assertTrue(beyond <= KEYS * Math.exp(-DEPTH), beyond + " keys overestimated by more than " + bound);
+    }
+
+    @Test
+    void addReturnsTheEstimateIncludingThatHit() {
+        CountMinSketch sketch = new CountMinSketch(DEPTH, WIDTH);
+        assertEquals(1, sketch.add("a"));
+        assertEquals(2, sketch.add("a"));
+        assertEquals(2, sketch.estimate("a"));
+        assertEquals(0, sketch.estimate("b"));
+    }
+
+    @Test
+    void halveAgesEveryCount() {
+        CountMinSketch sketch = new CountMinSketch(DEPTH, WIDTH);
+        for (int hit = 0; hit < 7; hit++)
+            sketch.add("a");
+        sketch.add("b");
+
+        sketch.halve();
+        assertEquals(3, sketch.estimate("a"));
+        assertEquals(0, sketch.estimate("b"));
+        assertEquals(4, sketch.add("a"));
+    }
+
+    @Test
+    void rejectsAnEmptySketch() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, WIDTH));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(DEPTH, 0));
+    }
+}
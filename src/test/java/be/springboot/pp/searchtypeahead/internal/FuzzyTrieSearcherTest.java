@@ -0,0 +1,56 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FuzzyTrieSearcherTest {
+
+    private static final int MAX_DEPTH = 5;
+    private static final int MAX_SUGGESTIONS = 3;
+
+    // "a"'s top-3 is full of the frequent ax*/ay*/az* queries, "abc" is only in the top-K below "ab"
+    private final TrieNode root = new TopKTrieBuilder(MAX_DEPTH)
+            .add("axx", 100)
+            .add("ayy", 90)
+            .add("azz", 80)
+            .add("abc", 5)
+            .build(MAX_SUGGESTIONS);
+
+    @Test
+    void exactPrefixWithoutEdits() {
+        assertEquals(List.of("axx"), texts(search("ax", 0)));
+    }
+
+    @Test
+    void exactPrefixComesFirstEvenWhenAShorterPathAlreadyMatches() {
+        // "a" is one edit away from "ab", the walk has to go on to "ab" to find "abc" at distance 0
+        List<String> suggestions = texts(search("ab", 1));
+        assertEquals("abc", suggestions.get(0));
+        assertEquals(MAX_SUGGESTIONS, suggestions.size());
+    }
+
+    @Test
+    void oneTypo() {
+        assertEquals("abc", texts(search("abd", 1)).get(0));
+        assertFalse(texts(search("xbd", 1)).contains("abc"));
+    }
+
+    @Test
+    void twoTypos() {
+        assertTrue(texts(search("xbd", 2)).contains("abc"));
+    }
+
+    private List<Suggestion> search(String query, int maxEdits) {
+        return new FuzzyTrieSearcher(query, maxEdits, MAX_DEPTH, 10_000).search(root, MAX_SUGGESTIONS);
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getSuggestion).toList();
+    }
+}
@@ -0,0 +1,77 @@
+package be.springboot.pp.searchtypeahead.internal;
+
+import be.springboot.pp.searchtypeahead.dtos.Suggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingHeavyHittersTest {
+
+    @Test
+    void onlyTheAdmittingOfferReturnsTrue() {
+        SpaceSavingHeavyHitters heavyHitters = new SpaceSavingHeavyHitters(2);
+        assertFalse(heavyHitters.incrementIfPresent("a"));
+        assertTrue(heavyHitters.offer("a", 3));
+        // a second offer of a tracked key is one more hit, not another admission
+        assertFalse(heavyHitters.offer("a", 3));
+        assertTrue(heavyHitters.incrementIfPresent("a"));
+
+        assertEquals(List.of("a=5"), entries(heavyHitters.top(10)));
+    }
+
+    @Test
+    void evictsTheColdestByLiveCount() {
+        SpaceSavingHeavyHitters heavyHitters = new SpaceSavingHeavyHitters(2);
+        heavyHitters.offer("a", 1);
+        heavyHitters.offer("b", 2);
+        // lock-free hits, a's bucket still says 1
+        for (int hit = 0; hit < 5; hit++)
+            heavyHitters.incrementIfPresent("a");
+
+        assertTrue(heavyHitters.offer("c", 1));
+        // b was the coldest once a was caught up, c inherits b's count + 1
+        assertEquals(List.of("a=6", "c=3"), entries(heavyHitters.top(10)));
+        assertFalse(heavyHitters.incrementIfPresent("b"));
+    }
+
+    @Test
+    void halveAgesCountsAndDropsTheOnesReachingZero() {
+        SpaceSavingHeavyHitters heavyHitters = new SpaceSavingHeavyHitters(3);
+        heavyHitters.offer("a", 1);
+        heavyHitters.offer("b", 5);
+        heavyHitters.offer("c", 9);
+
+        heavyHitters.halve();
+        assertEquals(2, heavyHitters.size());
+        assertEquals(List.of("c=4", "b=2"), entries(heavyHitters.top(10)));
+
+        // buckets are rebuilt with the halved counts, the next eviction still picks the coldest
+        heavyHitters.offer("d", 1);
+        assertTrue(heavyHitters.offer("e", 1));
+        assertFalse(heavyHitters.incrementIfPresent("d"));
+        assertTrue(heavyHitters.incrementIfPresent("b"));
+        assertEquals(List.of("c=4", "b=3", "e=2"), entries(heavyHitters.top(10)));
+    }
+
+    @Test
+    void keyHitMoreThanTotalOverCapacityIsKept() {
+        SpaceSavingHeavyHitters heavyHitters = new SpaceSavingHeavyHitters(10);
+        // 1000 hits, "hot" gets 200 of them, well above 1000 / 10
+        for (int i = 0; i < 1000; i++) {
+            String key = i % 5 == 0 ? "hot" : "cold-" + i;
+            if (!heavyHitters.incrementIfPresent(key))
+                heavyHitters.offer(key, 1);
+        }
+
+        assertEquals("hot", heavyHitters.top(1).get(0).getSuggestion());
+        assertEquals(10, heavyHitters.size());
+    }
+
+    private static List<String> entries(List<Suggestion> suggestions) {
+        return suggestions.stream().map(suggestion -> suggestion.getSuggestion() + "=" + suggestion.getFrequency()).toList();
+    }
+}
@@ -0,0 +1,119 @@
+package be.springboot.pp.webcrawler.db;
+
+import be.springboot.pp.webcrawler.dto.CrawlResult;
+import be.springboot.pp.webcrawler.enums.CrawlProcessStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CrawlDBTest {
+
+    private static final long ONE_HOUR = 3_600_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void finishedCrawlIsReadBackAfterARestart() throws IOException {
+        Path file = dir.resolve("crawls.db");
+        CrawlDB crawlDB = open(file, 1000);
+        CrawlResult written = finish(crawlDB, crawlDB.nextId(), "https://a.com/", "https://a.com/x", "https://a.com/y");
+        crawlDB.close();
+
+        CrawlDB reopened = open(file, 1000);
+        CrawlResult read = reopened.getResult(written.getCrawlProcessId());
+        assertNotNull(read);
+        assertEquals("https://a.com/", read.getSeedUrl());
+        assertEquals(List.of("https://a.com/x", "https://a.com/y"), read.getUrlsFound());
+        assertEquals(CrawlProcessStatus.FINISHED, read.getCrawlProcessStatus());
+        assertEquals(written.getFinishedAtMillis(), read.getFinishedAtMillis());
+        reopened.close();
+    }
+
+    @Test
+    void resultEvictedFromMemoryIsReadFromTheFile() throws IOException {
+        CrawlDB crawlDB = open(dir.resolve("crawls.db"), 1);
+        finish(crawlDB, 1, "https://a.com/", "https://a.com/x");
+        finish(crawlDB, 2, "https://b.com/", "https://b.com/x");
+
+        assertEquals(List.of("https://a.com/x"), crawlDB.getResult(1).getUrlsFound());
+        assertEquals(List.of("https://b.com/x"), crawlDB.getResult(2).getUrlsFound());
+        crawlDB.close();
+    }
+
+    @Test
+    void partialLastLineIsCutOffOnOpen() throws IOException {
+        Path file = dir.resolve("crawls.db");
+        CrawlDB crawlDB = open(file, 1000);
+        finish(crawlDB, 1, "https://a.com/", "https://a.com/x");
+        finish(crawlDB, 2, "https://b.com/", "https://b.com/x");
+        crawlDB.close();
+        long complete = Files.size(file);
+        // a crash in the middle of appending crawl 3
+        Files.write(file, "3\t{\"crawlProcessId\":3,\"se".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        CrawlDB reopened = open(file, 1000);
+        assertEquals(complete, Files.size(file));
+        assertNull(reopened.getResult(3));
+        assertEquals("https://b.com/", reopened.getResult(2).getSeedUrl());
+
+        // the next append starts where the partial line was, and survives another restart
+        finish(reopened, 3, "https://c.com/", "https://c.com/x");
+        reopened.close();
+        CrawlDB again = open(file, 1000);
+        assertEquals(List.of("https://c.com/x"), again.getResult(3).getUrlsFound());
+        assertEquals("https://a.com/", again.getResult(1).getSeedUrl());
+        again.close();
+    }
+
+    @Test
+    void idsContinueAfterTheHighestStoredOne() throws IOException {
+        Path file = dir.resolve("crawls.db");
+        CrawlDB crawlDB = open(file, 1000);
+        finish(crawlDB, 7, "https://a.com/");
+        finish(crawlDB, 3, "https://b.com/");
+        crawlDB.close();
+
+        CrawlDB reopened = open(file, 1000);
+        assertEquals(8, reopened.nextId());
+        // a stored id can't be taken again, even though nothing holds it in memory
+        assertFalse(reopened.pushResult(new CrawlResult("https://c.com/", 3)));
+        reopened.close();
+    }
+
+    @Test
+    void memoryOnlyWithoutAPath() throws IOException {
+        CrawlDB crawlDB = new CrawlDB(new ObjectMapper(), 1000, ONE_HOUR, "");
+        finish(crawlDB, crawlDB.nextId(), "https://a.com/", "https://a.com/x");
+
+        assertEquals(List.of("https://a.com/x"), crawlDB.getResult(1).getUrlsFound());
+        assertEquals(2, crawlDB.nextId());
+        crawlDB.close();
+    }
+
+    private static CrawlDB open(Path file, int maxEntries) throws IOException {
+        return new CrawlDB(new ObjectMapper(), maxEntries, ONE_HOUR, file.toString());
+    }
+
+    private static CrawlResult finish(CrawlDB crawlDB, int id, String seedUrl, String... urlsFound) {
+        CrawlResult crawlResult = new CrawlResult(seedUrl, id);
+        crawlDB.pushResult(crawlResult);
+        for (String url : urlsFound)
+            crawlResult.addUrl(url);
+        crawlResult.setCrawlProcessStatus(CrawlProcessStatus.FINISHED);
+        crawlDB.finishResult(crawlResult);
+        return crawlResult;
+    }
+}